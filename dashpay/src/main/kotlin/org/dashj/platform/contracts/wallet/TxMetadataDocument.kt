@@ -7,6 +7,12 @@
 
 package org.dashj.platform.contracts.wallet
 
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.Inflater
+import java.util.zip.InflaterInputStream
 import org.bitcoinj.crypto.ChildNumber
 import org.bitcoinj.crypto.EncryptedData
 import org.bitcoinj.crypto.KeyCrypterAESCBC
@@ -21,14 +27,86 @@ class TxMetadataDocument(document: Document) : AbstractDocument(document) {
         // 2^16 + 2
         val childNumber = ChildNumber(2 shl 15 + 1, true)
         const val MAX_ENCRYPTED_SIZE = 4096 - 32 // leave room for a partially filled block and the IV
+
+        // Formats of the decrypted data.  The original format has no version byte and is a CBOR
+        // array, which always starts with a byte from 0x80 to 0x9f, so versions are below 0x80
+        const val VERSION_CBOR = 0 // CBOR array of items
+        const val VERSION_DEFLATE_CBOR = 1 // version byte, then the raw deflated CBOR array of items
+        private const val MAX_DECOMPRESSED_SIZE = 1 shl 20
+
+        /**
+         * Encodes the items before they are encrypted.  Field names such as currencyCode are
+         * repeated in every item, so compressing the CBOR with [VERSION_DEFLATE_CBOR] fits several
+         * times more items into a document.  Compression is optional, since other clients that
+         * read these documents may not support it.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun encode(items: List<TxMetadataItem>, version: Int = VERSION_CBOR): ByteArray {
+            val cborData = Cbor.encode(items.map { it.toObject() })
+            return when (version) {
+                VERSION_CBOR -> cborData
+                VERSION_DEFLATE_CBOR -> {
+                    val deflater = Deflater(Deflater.BEST_COMPRESSION, true)
+                    try {
+                        val stream = ByteArrayOutputStream()
+                        stream.write(version)
+                        DeflaterOutputStream(stream, deflater).use { it.write(cborData) }
+                        stream.toByteArray()
+                    } finally {
+                        deflater.end()
+                    }
+                }
+                else -> throw IllegalArgumentException("unsupported tx metadata version: $version")
+            }
+        }
+
+        /**
+         * Decodes decrypted data in any of the supported formats
+         */
+        @JvmStatic
+        fun decode(data: ByteArray): List<TxMetadataItem> {
+            val cborData = if (data.isEmpty() || (data[0].toInt() and 0xe0) == 0x80) {
+                data
+            } else {
+                when (val version = data[0].toInt()) {
+                    VERSION_DEFLATE_CBOR -> inflate(data)
+                    else -> throw IllegalArgumentException("unsupported tx metadata version: $version")
+                }
+            }
+            val list = Cbor.decodeList(cborData)
+            return list.map { TxMetadataItem(it as Map<String, Any?>) }
+        }
+
+        private fun inflate(data: ByteArray): ByteArray {
+            val inflater = Inflater(true)
+            try {
+                val stream = ByteArrayOutputStream()
+                InflaterInputStream(ByteArrayInputStream(data, 1, data.size - 1), inflater).use { input ->
+                    val buffer = ByteArray(4096)
+                    while (true) {
+                        val count = input.read(buffer)
+                        if (count == -1) {
+                            break
+                        }
+                        stream.write(buffer, 0, count)
+                        if (stream.size() > MAX_DECOMPRESSED_SIZE) {
+                            throw IllegalArgumentException("tx metadata is larger than $MAX_DECOMPRESSED_SIZE bytes")
+                        }
+                    }
+                }
+                return stream.toByteArray()
+            } finally {
+                inflater.end()
+            }
+        }
     }
 
     val keyIndex: Int
         get() = document.data["keyIndex"] as Int
     val encryptionKeyIndex: Int
         get() = document.data["encryptionKeyIndex"] as Int
-    val encryptedMetadata: ByteArray
-        get() = getFieldByteArray("encryptedMetadata")!!
+    val encryptedMetadata: ByteArray by field { getFieldByteArray("encryptedMetadata")!! }
 
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
@@ -49,9 +127,6 @@ class TxMetadataDocument(document: Document) : AbstractDocument(document) {
         val iv = encryptedMetadata.copyOfRange(0, 16)
         val encryptedData = encryptedMetadata.copyOfRange(16, encryptedMetadata.size)
         val decryptedData = cipher.decrypt(EncryptedData(iv, encryptedData), keyParameter)
-        // use Cbor.decodeList
-        val list = Cbor.decodeList(decryptedData)
-        // use .map to convert to List<TxMetadataItem>
-        return list.map { TxMetadataItem(it as Map<String, Any?>) }
+        return decode(decryptedData)
     }
 }
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.dashpay
+
+import java.util.concurrent.ScheduledFuture
+import org.dashj.platform.sdk.platform.Documents
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * Merges many watches for items of the same kind into batched queries
+ *
+ * Each watch waits for a set of keys.  Whenever one or more watches are due, a single query
+ * is made (in chunks of [batchSize]) for all of the keys that are still missing, rather than
+ * one query per watch.  Each watch keeps its own retry count and delay.
+ *
+ * @param batchWindowMillis how long a new watch waits for others to join its first query
+ * @param query returns the items that were found for the keys, which number at most [batchSize]
+ */
+class BatchWatcher<K, V>(
+    val engine: WatchEngine,
+    private val batchSize: Int = Documents.DOCUMENT_LIMIT,
+    private val batchWindowMillis: Long = DEFAULT_BATCH_WINDOW,
+    private val query: (List<K>) -> Map<K, V>
+) {
+    companion object {
+        const val DEFAULT_BATCH_WINDOW = 50L
+        private val log: Logger = LoggerFactory.getLogger(BatchWatcher::class.java)
+    }
+
+    private inner class Pending(
+        val keys: Set<K>,
+        var retriesLeft: Int,
+        var delayMillis: Long,
+        val retryDelayType: RetryDelayType,
+        val onFound: (K, V) -> Unit,
+        val onComplete: (Map<K, V>) -> Unit,
+        val onTimeout: (List<K>) -> Unit,
+        val handle: WatchHandle
+    ) {
+        val found = hashMapOf<K, V>()
+        var nextPollAt = System.currentTimeMillis() + batchWindowMillis
+
+        val missing: List<K>
+            get() = keys.filter { !found.containsKey(it) }
+    }
+
+    private val pending = arrayListOf<Pending>()
+    private var scheduledTick: ScheduledFuture<*>? = null
+    private var scheduledTickAt = Long.MAX_VALUE
+    private var polling = false
+
+    val pendingCount: Int
+        @Synchronized get() = pending.size
+
+    /**
+     * Waits for all of [keys] to be found
+     *
+     * @param onFound called once for each key as it is found
+     * @param onComplete called with all items when every key has been found
+     * @param onTimeout called with the keys that were not found after all retries
+     */
+    fun watch(
+        keys: Collection<K>,
+        retryCount: Int,
+        delayMillis: Long,
+        retryDelayType: RetryDelayType,
+        onFound: (K, V) -> Unit = { _, _ -> },
+        onComplete: (Map<K, V>) -> Unit,
+        onTimeout: (List<K>) -> Unit
+    ): WatchHandle {
+        val handle = WatchHandle()
+        val watch = Pending(keys.toSet(), retryCount, delayMillis, retryDelayType, onFound, onComplete, onTimeout, handle)
+        handle.onCancel = { remove(watch) }
+        synchronized(this) {
+            pending.add(watch)
+            scheduleNextPoll()
+        }
+        return handle
+    }
+
+    @Synchronized
+    private fun remove(watch: Pending) {
+        pending.remove(watch)
+    }
+
+    // must hold the lock
+    private fun scheduleNextPoll() {
+        if (polling || pending.isEmpty()) {
+            return
+        }
+        val next = pending.minByOrNull { it.nextPollAt }!!.nextPollAt
+        if (scheduledTick != null && scheduledTickAt <= next) {
+            return
+        }
+        scheduledTick?.cancel(false)
+        scheduledTickAt = next
+        scheduledTick = engine.schedule(maxOf(0L, next - System.currentTimeMillis())) { poll() }
+    }
+
+    private fun update(watch: Pending, results: Map<K, V>) {
+        watch.missing.forEach { key ->
+            results[key]?.let {
+                watch.found[key] = it
+                watch.onFound(key, it)
+            }
+        }
+        val missing = watch.missing
+        when {
+            missing.isEmpty() -> {
+                remove(watch)
+                watch.handle.finish()
+                watch.onComplete(watch.found)
+            }
+            watch.retriesLeft > 0 -> {
+                watch.retriesLeft--
+                watch.nextPollAt = System.currentTimeMillis() + engine.withJitter(watch.delayMillis)
+                watch.delayMillis = watch.retryDelayType.nextDelay(watch.delayMillis)
+            }
+            else -> {
+                remove(watch)
+                watch.handle.finish()
+                watch.onTimeout(missing)
+            }
+        }
+    }
+
+    private fun poll() {
+        val now = System.currentTimeMillis()
+        val due = synchronized(this) {
+            scheduledTick = null
+            scheduledTickAt = Long.MAX_VALUE
+            if (polling) {
+                return
+            }
+            polling = true
+            // watches that will be due within the window join this query
+            pending.filter { it.nextPollAt <= now + batchWindowMillis }
+        }
+
+        try {
+            val results = hashMapOf<K, V>()
+            due.flatMap { it.missing }.distinct().chunked(batchSize).forEach { keys ->
+                try {
+                    results.putAll(query(keys))
+                } catch (e: Exception) {
+                    log.info("batch watch query failed: $e")
+                }
+            }
+
+            for (watch in due) {
+                if (!watch.handle.isCancelled) {
+                    try {
+                        update(watch, results)
+                    } catch (e: Exception) {
+                        log.warn("batch watch callback failed: $e", e)
+                    }
+                }
+            }
+        } finally {
+            synchronized(this) {
+                polling = false
+                scheduleNextPoll()
+            }
+        }
+    }
+}
@@ -12,8 +12,7 @@ import com.google.common.base.Preconditions.checkState
 import com.google.common.collect.ImmutableList
 import java.io.ByteArrayOutputStream
 import java.util.Date
-import java.util.Timer
-import kotlin.concurrent.timerTask
+import java.util.concurrent.ConcurrentHashMap
 import kotlinx.coroutines.delay
 import org.bitcoinj.coinjoin.CoinJoinCoinSelector
 import org.bitcoinj.core.Address
@@ -75,10 +74,29 @@ class BlockchainIdentity {
     var profiles: Profiles
     var params: NetworkParameters
 
+    /** the engine shared by the watches of all identities on this platform */
+    private val watchEngine: WatchEngine
+        get() = WatchEngine.forPlatform(platform)
+
+    /**
+     * the ECDH shared keys of contacts, which must be cleared with [clearKeyCaches] when the
+     * wallet is locked
+     */
+    val sharedKeyCache = SharedKeyCache()
+    private val accountReferenceCache = ConcurrentHashMap<Pair<Int, Identifier>, Int>()
+    private val contactKeyChainLock = Any()
+
+    /** notified when contact keychains are added to the wallet, so that the bloom filter is updated */
+    var filterUpdateCoordinator: FilterUpdateCoordinator? = null
+
+    /** holds the decrypted identity key chain between [unlock] and [lock] */
+    val keySession = KeySession({ delayMillis, task -> watchEngine.schedule(delayMillis, task) })
+
     private constructor(platform: Platform) {
         this.params = platform.params
         this.platform = platform
         profiles = Profiles(platform)
+        keySession.addLockListener { clearKeyCaches() }
     }
 
     companion object {
@@ -87,6 +105,7 @@ class BlockchainIdentity {
         const val BLOCKCHAIN_USERNAME_UNIQUE = "BLOCKCHAIN_USERNAME_UNIQUE"
 
         private val log = LoggerFactory.getLogger(BlockchainIdentity::class.java)
+        private const val DECRYPTED_AUTHENTICATION_CHAIN = "authenticationChain"
     }
 
     enum class RegistrationStatus {
@@ -959,12 +978,7 @@ class BlockchainIdentity {
         when (type) {
             IdentityPublicKey.Type.ECDSA_SECP256K1 -> {
                 val authenticationChain = authenticationGroup!!.getKeyChain(AuthenticationKeyChain.KeyChainType.BLOCKCHAIN_IDENTITY)
-                // decrypt keychain
-                val decryptedChain = if (wallet!!.isEncrypted) {
-                    authenticationChain.toDecrypted(keyParameter)
-                } else {
-                    authenticationChain
-                }
+                val decryptedChain = decryptedAuthenticationChain(authenticationChain, keyParameter)
                 val key = decryptedChain.getKey(index) // watchingKey
                 checkState(key.path.last().isHardened)
                 return key as ECKey?
@@ -973,6 +987,48 @@ class BlockchainIdentity {
         }
     }
 
+    /**
+     * Decrypts the identity key chain, or returns the copy decrypted earlier in the current
+     * [keySession] if [keyParameter] is null or the key that unlocked the session
+     */
+    private fun decryptedAuthenticationChain(
+        authenticationChain: AuthenticationKeyChain,
+        keyParameter: KeyParameter?
+    ): AuthenticationKeyChain {
+        if (!wallet!!.isEncrypted) {
+            return authenticationChain
+        }
+        if (keySession.matches(keyParameter)) {
+            keySession.getOrPut(DECRYPTED_AUTHENTICATION_CHAIN) {
+                authenticationChain.toDecrypted(it) as AuthenticationKeyChain
+            }?.let { return it }
+        }
+        return authenticationChain.toDecrypted(keyParameter) as AuthenticationKeyChain
+    }
+
+    /**
+     * Keeps the decrypted identity keys in memory until [lock] is called or the keys have not been
+     * used for [idleTimeoutMillis].  While unlocked, identity keys used to sign state transitions and
+     * derive shared keys are obtained without decrypting the key chain again, including by
+     * [getPrivateKeyByPurpose] when it is passed a null KeyParameter.
+     */
+    @JvmOverloads
+    fun unlock(keyParameter: KeyParameter, idleTimeoutMillis: Long = KeySession.DEFAULT_IDLE_TIMEOUT_MILLIS) {
+        checkState(isLocal, "this must own a wallet")
+        keySession.unlock(keyParameter, idleTimeoutMillis)
+    }
+
+    /**
+     * Ends the [keySession] and clears the cached shared keys of contacts
+     */
+    fun lock() {
+        keySession.lock()
+        clearKeyCaches()
+    }
+
+    val isUnlocked: Boolean
+        get() = keySession.isUnlocked
+
     @VisibleForTesting
     fun privateKeyAtPath(
         rootIndex: Int,
@@ -986,12 +1042,7 @@ class BlockchainIdentity {
         when (type) {
             IdentityPublicKey.Type.ECDSA_SECP256K1 -> {
                 val authenticationChain = authenticationGroup!!.getKeyChain(AuthenticationKeyChain.KeyChainType.BLOCKCHAIN_IDENTITY)
-                // decrypt keychain
-                val decryptedChain = if (wallet!!.isEncrypted) {
-                    authenticationChain.toDecrypted(keyParameter)
-                } else {
-                    authenticationChain
-                }
+                val decryptedChain = decryptedAuthenticationChain(authenticationChain, keyParameter)
                 val fullPath = ImmutableList.builder<ChildNumber>().addAll(authenticationChain.accountPath)
                     .add(ChildNumber(rootIndex, true))
                     .add(childNumber) // this should be hardened
@@ -1067,38 +1118,32 @@ class BlockchainIdentity {
         delayMillis: Long,
         retryDelayType: RetryDelayType,
         callback: RegisterIdentityCallback
-    ) {
-        val identityQuery = MulticallQuery(
-            object : MulticallMethod<Identity?> {
-                override fun execute(): Identity? {
-                    return platform.identities.get(uniqueIdString)
-                }
-            },
-            MulticallQuery.Companion.CallType.MAJORITY_FOUND
-        )
-
-        // have more than half the nodes returned success and do they all agree?
-        if (identityQuery.queryFound()) {
-            identity = identityQuery.getResult()
-            registrationStatus = RegistrationStatus.REGISTERED
-            platform.stateRepository.addValidIdentity(identity!!.id)
-            save()
-            callback.onComplete(uniqueIdString)
-        } else {
-            if (retryCount > 0) {
-                Timer("monitorBlockchainIdentityStatus", false).schedule(
-                    timerTask {
-                        val nextDelay = delayMillis * when (retryDelayType) {
-                            RetryDelayType.SLOW20 -> 5 / 4
-                            RetryDelayType.SLOW50 -> 3 / 2
-                            else -> 1
+    ): WatchHandle {
+        return watchEngine.watch(
+            retryCount,
+            delayMillis,
+            retryDelayType,
+            poll = {
+                val identityQuery = MulticallQuery(
+                    object : MulticallMethod<Identity?> {
+                        override fun execute(): Identity? {
+                            return platform.identities.get(uniqueIdString)
                         }
-                        watchIdentity(retryCount - 1, nextDelay, retryDelayType, callback)
                     },
-                    delayMillis
+                    MulticallQuery.Companion.CallType.MAJORITY_FOUND
                 )
-            } else callback.onTimeout()
-        }
+                // have more than half the nodes returned success and do they all agree?
+                if (identityQuery.queryFound()) identityQuery.getResult() else null
+            },
+            onComplete = {
+                identity = it
+                registrationStatus = RegistrationStatus.REGISTERED
+                platform.stateRepository.addValidIdentity(it.id)
+                save()
+                callback.onComplete(uniqueIdString)
+            },
+            onTimeout = { callback.onTimeout() }
+        )
     }
 
     @Deprecated("v18 makes this function obsolete")
@@ -1124,11 +1169,7 @@ class BlockchainIdentity {
             return uniqueIdString
         } else {
             if (retryCount > 0) {
-                val nextDelay = delayMillis * when (retryDelayType) {
-                    RetryDelayType.SLOW20 -> 5 / 4
-                    RetryDelayType.SLOW50 -> 3 / 2
-                    else -> 1
-                }
+                val nextDelay = retryDelayType.nextDelay(delayMillis)
                 delay(nextDelay)
                 return watchIdentity(retryCount - 1, nextDelay, retryDelayType)
             }
@@ -1154,85 +1195,27 @@ class BlockchainIdentity {
         delayMillis: Long,
         retryDelayType: RetryDelayType,
         callback: RegisterPreorderCallback
-    ) {
-        val query = DocumentQuery.Builder()
-            .where(
-                listOf(
-                    "saltedDomainHash",
-                    "in",
-                    saltedDomainHashes.map {
-                        it.value
-                    }
-                )
-            ).orderBy("saltedDomainHash").build()
-        val preorderDocuments = platform.documents.get(Names.DPNS_PREORDER_DOCUMENT, query)
-
-        if (preorderDocuments.isNotEmpty()) {
-            val usernamesLeft = HashMap(saltedDomainHashes)
-            for (username in saltedDomainHashes.keys) {
-                val saltedDomainHashData = saltedDomainHashes[username] as ByteArray
-                for (preorderDocument in preorderDocuments) {
-                    if ((preorderDocument.data["saltedDomainHash"] as ByteArray).contentEquals(saltedDomainHashData)) {
-                        var usernameStatus = if (usernameStatuses.containsKey(username)) {
-                            usernameStatuses[username] as MutableMap<String, Any>
-                        } else {
-                            HashMap()
-                        }
-                        usernameStatus[BLOCKCHAIN_USERNAME_STATUS] = UsernameStatus.PREORDERED
-                        usernameStatuses[username] = usernameStatus
-                        saveUsername(username, UsernameStatus.PREORDERED, null, true)
-                        usernamesLeft.remove(username)
-                    }
+    ): WatchHandle {
+        val usernames = saltedDomainHashes.entries.associate { Sha256Hash.wrap(it.value) to it.key }
+        return watchEngine.preorderWatcher.watch(
+            usernames.keys,
+            retryCount,
+            delayMillis,
+            retryDelayType,
+            onFound = { saltedDomainHash, _ ->
+                val username = usernames.getValue(saltedDomainHash)
+                val usernameStatus = if (usernameStatuses.containsKey(username)) {
+                    usernameStatuses[username] as MutableMap<String, Any>
+                } else {
+                    HashMap()
                 }
-            }
-            if (usernamesLeft.size > 0 && retryCount > 0) {
-                val saltedDomainHashesLeft = saltedDomainHashes.filter { usernamesLeft.containsKey(it.key) }
-                Timer("monitorBlockchainIdentityStatus", false).schedule(
-                    timerTask {
-                        val nextDelay = delayMillis * when (retryDelayType) {
-                            RetryDelayType.SLOW20 -> 5 / 4
-                            RetryDelayType.SLOW50 -> 3 / 2
-                            else -> 1
-                        }
-                        watchPreorder(
-                            saltedDomainHashesLeft,
-                            retryCount - 1,
-                            nextDelay,
-                            retryDelayType,
-                            callback
-                        )
-                    },
-                    delayMillis
-                )
-            } else if (usernamesLeft.size > 0) {
-                val saltedDomainHashesLeft = saltedDomainHashes.filter { usernamesLeft.containsKey(it.key) }
-                callback.onTimeout(saltedDomainHashesLeft.keys.toList())
-            } else {
-                callback.onComplete(saltedDomainHashes.keys.toList())
-            }
-        } else {
-            if (retryCount > 0) {
-                Timer("monitorForDPNSPreorderSaltedDomainHashes", false).schedule(
-                    timerTask {
-                        val nextDelay = delayMillis * when (retryDelayType) {
-                            RetryDelayType.SLOW20 -> 5 / 4
-                            RetryDelayType.SLOW50 -> 3 / 2
-                            else -> 1
-                        }
-                        watchPreorder(
-                            saltedDomainHashes,
-                            retryCount - 1,
-                            nextDelay,
-                            retryDelayType,
-                            callback
-                        )
-                    },
-                    delayMillis
-                )
-            } else {
-                callback.onTimeout(saltedDomainHashes.keys.toList())
-            }
-        }
+                usernameStatus[BLOCKCHAIN_USERNAME_STATUS] = UsernameStatus.PREORDERED
+                usernameStatuses[username] = usernameStatus
+                saveUsername(username, UsernameStatus.PREORDERED, null, true)
+            },
+            onComplete = { callback.onComplete(saltedDomainHashes.keys.toList()) },
+            onTimeout = { missing -> callback.onTimeout(missing.map { usernames.getValue(it) }) }
+        )
     }
 
     @Deprecated("v18 makes this function obsolete")
@@ -1274,11 +1257,7 @@ class BlockchainIdentity {
             if (usernamesLeft.size > 0 && retryCount > 0) {
                 val saltedDomainHashesLeft = saltedDomainHashes.filter { usernamesLeft.containsKey(it.key) }
 
-                val nextDelay = delayMillis * when (retryDelayType) {
-                    RetryDelayType.SLOW20 -> 5 / 4
-                    RetryDelayType.SLOW50 -> 3 / 2
-                    else -> 1
-                }
+                val nextDelay = retryDelayType.nextDelay(delayMillis)
                 delay(nextDelay)
                 return watchPreorder(
                     saltedDomainHashesLeft,
@@ -1294,11 +1273,7 @@ class BlockchainIdentity {
             }
         } else {
             if (retryCount > 0) {
-                val nextDelay = delayMillis * when (retryDelayType) {
-                    RetryDelayType.SLOW20 -> 5 / 4
-                    RetryDelayType.SLOW50 -> 3 / 2
-                    else -> 1
-                }
+                val nextDelay = retryDelayType.nextDelay(delayMillis)
                 delay(nextDelay)
                 return watchPreorder(
                     saltedDomainHashes,
@@ -1332,68 +1307,28 @@ class BlockchainIdentity {
         delayMillis: Long,
         retryDelayType: RetryDelayType,
         callback: RegisterNameCallback
-    ) {
-        val query = DocumentQuery.Builder()
-            .where("normalizedParentDomainName", "==", Names.DEFAULT_PARENT_DOMAIN)
-            .where(listOf("normalizedLabel", "in", usernames.map { it.toLowerCase() }))
-            .orderBy("normalizedParentDomainName")
-            .orderBy("normalizedLabel")
-            .build()
-        val nameDocuments = platform.documents.get(Names.DPNS_DOMAIN_DOCUMENT, query)
-
-        if (nameDocuments.isNotEmpty()) {
-            val usernamesLeft = ArrayList(usernames)
-            for (username in usernames) {
-                val normalizedName = username.toLowerCase()
-                for (nameDocument in nameDocuments) {
-                    if (nameDocument.data["normalizedLabel"] == normalizedName) {
-                        var usernameStatus = if (usernameStatuses.containsKey(username)) {
-                            usernameStatuses[username] as MutableMap<String, Any>
-                        } else {
-                            HashMap()
-                        }
-                        usernameStatus[BLOCKCHAIN_USERNAME_STATUS] = UsernameStatus.CONFIRMED
-                        usernameStatus[BLOCKCHAIN_USERNAME_UNIQUE] = Names.isUniqueIdentity(nameDocument)
-                        usernameStatuses[username] = usernameStatus
-                        saveUsername(username, UsernameStatus.CONFIRMED, null, true)
-                        usernamesLeft.remove(username)
-                    }
+    ): WatchHandle {
+        val normalizedNames = usernames.associateBy { it.toLowerCase() }
+        return watchEngine.usernameWatcher.watch(
+            normalizedNames.keys,
+            retryCount,
+            delayMillis,
+            retryDelayType,
+            onFound = { normalizedName, nameDocument ->
+                val username = normalizedNames.getValue(normalizedName)
+                val usernameStatus = if (usernameStatuses.containsKey(username)) {
+                    usernameStatuses[username] as MutableMap<String, Any>
+                } else {
+                    HashMap()
                 }
-            }
-            if (usernamesLeft.size > 0 && retryCount > 0) {
-                Timer("monitorForDPNSUsernames", false).schedule(
-                    timerTask {
-                        val nextDelay = delayMillis * when (retryDelayType) {
-                            RetryDelayType.SLOW20 -> 5 / 4
-                            RetryDelayType.SLOW50 -> 3 / 2
-                            else -> 1
-                        }
-                        watchUsernames(usernamesLeft, retryCount - 1, nextDelay, retryDelayType, callback)
-                    },
-                    delayMillis
-                )
-            } else if (usernamesLeft.size > 0) {
-                callback.onTimeout(usernamesLeft)
-            } else {
-                callback.onComplete(usernames)
-            }
-        } else {
-            if (retryCount > 0) {
-                Timer("monitorBlockchainIdentityStatus", false).schedule(
-                    timerTask {
-                        val nextDelay = delayMillis * when (retryDelayType) {
-                            RetryDelayType.SLOW20 -> 5 / 4
-                            RetryDelayType.SLOW50 -> 3 / 2
-                            else -> 1
-                        }
-                        watchUsernames(usernames, retryCount - 1, nextDelay, retryDelayType, callback)
-                    },
-                    delayMillis
-                )
-            } else {
-                callback.onTimeout(usernames)
-            }
-        }
+                usernameStatus[BLOCKCHAIN_USERNAME_STATUS] = UsernameStatus.CONFIRMED
+                usernameStatus[BLOCKCHAIN_USERNAME_UNIQUE] = Names.isUniqueIdentity(nameDocument)
+                usernameStatuses[username] = usernameStatus
+                saveUsername(username, UsernameStatus.CONFIRMED, null, true)
+            },
+            onComplete = { callback.onComplete(usernames) },
+            onTimeout = { missing -> callback.onTimeout(missing.map { normalizedNames.getValue(it) }) }
+        )
     }
 
     @Deprecated("v18 makes this function obsolete")
@@ -1428,11 +1363,7 @@ class BlockchainIdentity {
                 }
             }
             if (usernamesLeft.size > 0 && retryCount > 0) {
-                val nextDelay = delayMillis * when (retryDelayType) {
-                    RetryDelayType.SLOW20 -> 5 / 4
-                    RetryDelayType.SLOW50 -> 3 / 2
-                    else -> 1
-                }
+                val nextDelay = retryDelayType.nextDelay(delayMillis)
                 delay(nextDelay)
                 return watchUsernames(usernamesLeft, retryCount - 1, nextDelay, retryDelayType)
             } else if (usernamesLeft.size > 0) {
@@ -1442,11 +1373,7 @@ class BlockchainIdentity {
             }
         } else {
             if (retryCount > 0) {
-                val nextDelay = delayMillis * when (retryDelayType) {
-                    RetryDelayType.SLOW20 -> 5 / 4
-                    RetryDelayType.SLOW50 -> 3 / 2
-                    else -> 1
-                }
+                val nextDelay = retryDelayType.nextDelay(delayMillis)
                 delay(nextDelay)
                 return watchUsernames(usernames, retryCount - 1, nextDelay, retryDelayType)
             } else {
@@ -1591,11 +1518,7 @@ class BlockchainIdentity {
             return Profile(profileResult)
         } else {
             if (retryCount > 0) {
-                val nextDelay = delayMillis * when (retryDelayType) {
-                    RetryDelayType.SLOW20 -> 5 / 4
-                    RetryDelayType.SLOW50 -> 3 / 2
-                    else -> 1
-                }
+                val nextDelay = retryDelayType.nextDelay(delayMillis)
                 delay(nextDelay)
                 return watchProfile(retryCount - 1, nextDelay, retryDelayType)
             }
@@ -1608,33 +1531,24 @@ class BlockchainIdentity {
         delayMillis: Long,
         retryDelayType: RetryDelayType,
         callback: UpdateProfileCallback
-    ) {
+    ): WatchHandle {
         val updatedAt = if (lastProfileDocument?.updatedAt != null) {
             lastProfileDocument!!.updatedAt!!
         } else {
             -1
         }
 
-        val profileResult = profiles.get(uniqueIdentifier, updatedAt)
-
-        if (profileResult != null) {
-            save()
-            callback.onComplete(uniqueIdString, profileResult)
-        } else {
-            if (retryCount > 0) {
-                Timer("monitorUpdateProfileStatus", false).schedule(
-                    timerTask {
-                        val nextDelay = delayMillis * when (retryDelayType) {
-                            RetryDelayType.SLOW20 -> 5 / 4
-                            RetryDelayType.SLOW50 -> 3 / 2
-                            else -> 1
-                        }
-                        watchProfile(retryCount - 1, nextDelay, retryDelayType, callback)
-                    },
-                    delayMillis
-                )
-            } else callback.onTimeout()
-        }
+        return watchEngine.watch(
+            retryCount,
+            delayMillis,
+            retryDelayType,
+            poll = { profiles.get(uniqueIdentifier, updatedAt) },
+            onComplete = {
+                save()
+                callback.onComplete(uniqueIdString, it)
+            },
+            onTimeout = { callback.onTimeout() }
+        )
     }
 
     // Contact Requests
@@ -1653,6 +1567,7 @@ class BlockchainIdentity {
             }
             FriendKeyChain.KeyChainType.SENDING_CHAIN -> wallet!!.addSendingToFriendKeyChain(contactKeyChain)
         }
+        filterUpdateCoordinator?.requestUpdate()
     }
 
     fun maybeDecryptSeed(aesKey: KeyParameter?): DeterministicSeed {
@@ -1717,9 +1632,36 @@ class BlockchainIdentity {
         val contactIdentityPublicKey = contactIdentity.getPublicKeyById(index)
             ?: throw IllegalArgumentException("index $index does not exist for $contactIdentity")
 
-        val contactPublicKey = contactIdentityPublicKey.getKey()
+        checkIdentity()
+        val cacheKey = SharedKeyCache.Key(KeyIndexPurpose.AUTHENTICATION.ordinal, contactIdentity.id, index)
+        val encryptionKey = getOrDeriveSharedKey(cacheKey, aesKey) {
+            deriveSharedKey(KeyIndexPurpose.AUTHENTICATION.ordinal, contactIdentityPublicKey, aesKey)
+        }
+        return encryptExtendedPublicKey(xpub, encryptionKey)
+    }
 
-        return encryptExtendedPublicKey(xpub, contactPublicKey, contactIdentityPublicKey.type, aesKey)
+    /**
+     * Returns a shared key from [sharedKeyCache] that was cached with [aesKey].  Without [aesKey],
+     * the cache is only used if the wallet is not encrypted or the [keySession] is unlocked.
+     * Otherwise the key is derived, which fails if the wallet is locked, so that a key derived
+     * earlier cannot bypass the wallet lock.
+     */
+    private fun getOrDeriveSharedKey(
+        cacheKey: SharedKeyCache.Key,
+        aesKey: KeyParameter?,
+        derive: () -> KeyParameter
+    ): KeyParameter {
+        val wallet = wallet!!
+        val useCache = aesKey != null || !wallet.isEncrypted || keySession.matches(null)
+        return if (useCache) sharedKeyCache.getOrDerive(cacheKey, aesKey, derive) else derive()
+    }
+
+    /**
+     * Derives the ECDH shared key from our identity key at [keyIndex] and the public key of a contact
+     */
+    private fun deriveSharedKey(keyIndex: Int, contactIdentityPublicKey: IdentityPublicKey, aesKey: KeyParameter?): KeyParameter {
+        val decryptedIdentityKey = maybeDecryptKey(keyIndex, contactIdentityPublicKey.type, aesKey)
+        return KeyCrypterECDH().deriveKey(decryptedIdentityKey, contactIdentityPublicKey.getKey())
     }
 
     /**
@@ -1744,6 +1686,12 @@ class BlockchainIdentity {
         // derived the shared key (our private key + their public key)
         val encryptionKey = keyCrypter.deriveKey(decryptedIdentityKey, contactPublicKey)
 
+        return encryptExtendedPublicKey(xpub, encryptionKey)
+    }
+
+    private fun encryptExtendedPublicKey(xpub: ByteArray, encryptionKey: KeyParameter): Pair<ByteArray, ByteArray> {
+        val keyCrypter = KeyCrypterECDH()
+
         // encrypt
         val encryptedData = keyCrypter.encrypt(xpub, encryptionKey)
 
@@ -1773,15 +1721,11 @@ class BlockchainIdentity {
     ): String {
         val contactIdentityPublicKey = contactIdentity.getPublicKeyById(contactKeyIndex)
             ?: throw IllegalArgumentException("index $contactKeyIndex does not exist for $contactIdentity")
-        val contactPublicKey = contactIdentityPublicKey.getKey()
-
-        return decryptExtendedPublicKey(
-            encryptedXpub,
-            contactPublicKey,
-            contactIdentityPublicKey.type,
-            keyIndex,
-            aesKey
-        )
+        val cacheKey = SharedKeyCache.Key(keyIndex, contactIdentity.id, contactKeyIndex)
+        val encryptionKey = getOrDeriveSharedKey(cacheKey, aesKey) {
+            deriveSharedKey(keyIndex, contactIdentityPublicKey, aesKey)
+        }
+        return decryptExtendedPublicKey(encryptedXpub, encryptionKey)
     }
 
     /**
@@ -1808,6 +1752,12 @@ class BlockchainIdentity {
         // derive the shared key (our private key + their public key)
         val encryptionKey = keyCrypter.deriveKey(decryptedIdentityKey, contactPublicKey)
 
+        return decryptExtendedPublicKey(encryptedXpub, encryptionKey)
+    }
+
+    private fun decryptExtendedPublicKey(encryptedXpub: ByteArray, encryptionKey: KeyParameter): String {
+        val keyCrypter = KeyCrypterECDH()
+
         // separate the encrypted data (IV + ciphertext) and then decrypt the extended public key
         val encryptedData =
             EncryptedData(encryptedXpub.copyOfRange(0, 16), encryptedXpub.copyOfRange(16, encryptedXpub.size))
@@ -1866,6 +1816,129 @@ class BlockchainIdentity {
         return false
     }
 
+    /**
+     * Adds the keychains for many contact requests, both sent and received, such as when a wallet
+     * is restored.  Our identity keys and the wallet seed are decrypted once for the batch, then the
+     * ECDH key derivation and decryption of each request is done concurrently on [Platform.executor],
+     * and finally all of the keychains are added to the wallet in one step.
+     *
+     * Requests that already have a keychain in the wallet are skipped.
+     *
+     * @param encryptionKey the key to the encrypted wallet, or null if it is not encrypted
+     */
+    fun importContactRequests(imports: List<ContactImport>, encryptionKey: KeyParameter?): ContactImport.Result {
+        checkIdentity()
+        val wallet = wallet!!
+        Preconditions.checkArgument(wallet.isEncrypted == (encryptionKey != null))
+
+        val pending = imports.filter { !hasContactKeyChain(it.contactRequest) }
+        if (pending.isEmpty()) {
+            return ContactImport.Result(listOf(), mapOf())
+        }
+
+        // decrypt our keys once, rather than for each request
+        val identityKeys = ConcurrentHashMap<Int, ECKey>()
+        val identityKey = { keyIndex: Int, type: IdentityPublicKey.Type ->
+            identityKeys.computeIfAbsent(keyIndex) { maybeDecryptKey(it, type, encryptionKey)!! }
+        }
+        val seed by lazy { maybeDecryptSeed(encryptionKey) }
+
+        val prepared = platform.executor.fanOutMap(pending) { import ->
+            try {
+                Pair(import, prepareContactKeyChain(import, identityKey, { seed }, encryptionKey))
+            } catch (e: Exception) {
+                Pair(import, e)
+            }
+        }
+
+        val added = arrayListOf<ContactRequest>()
+        val failed = hashMapOf<ContactRequest, Exception>()
+        // the wallet methods take the wallet's own lock, this lock only keeps concurrent imports
+        // from adding the same keychain twice
+        synchronized(contactKeyChainLock) {
+            for ((import, keyChainOrError) in prepared) {
+                when (keyChainOrError) {
+                    is FriendKeyChain -> if (!hasContactKeyChain(import.contactRequest)) {
+                        when (keyChainOrError.type) {
+                            FriendKeyChain.KeyChainType.RECEIVING_CHAIN -> wallet.addReceivingFromFriendKeyChain(keyChainOrError)
+                            FriendKeyChain.KeyChainType.SENDING_CHAIN -> wallet.addSendingToFriendKeyChain(keyChainOrError)
+                        }
+                        added.add(import.contactRequest)
+                    }
+                    is Exception -> failed[import.contactRequest] = keyChainOrError
+                    else -> Unit // the request is not for the default account
+                }
+            }
+        }
+        if (added.isNotEmpty()) {
+            filterUpdateCoordinator?.requestUpdate()
+        }
+        log.info("imported ${added.size} of ${imports.size} contact requests, ${failed.size} failed")
+        return ContactImport.Result(added, failed)
+    }
+
+    /**
+     * @return true if the wallet has the keychain created from [contactRequest], which is the
+     * receiving keychain for a request that we sent and the sending keychain for one we received
+     */
+    fun hasContactKeyChain(contactRequest: ContactRequest): Boolean {
+        val wallet = wallet!!
+        return if (contactRequest.ownerId == uniqueIdentifier) {
+            wallet.hasReceivingKeyChain(EvolutionContact(uniqueId, account, contactRequest.toUserId.toSha256Hash(), -1))
+        } else {
+            val contactId = contactRequest.ownerId.toSha256Hash()
+            wallet.hasSendingKeyChain(EvolutionContact(uniqueId, account, contactId, accountReferenceOf(contactRequest)))
+        }
+    }
+
+    /**
+     * Decrypts a contact request and creates its keychain, which is encrypted if the wallet is
+     *
+     * @return the keychain or null if a request that we sent is not for the default account
+     */
+    private fun prepareContactKeyChain(
+        import: ContactImport,
+        identityKey: (Int, IdentityPublicKey.Type) -> ECKey,
+        seed: () -> DeterministicSeed,
+        encryptionKey: KeyParameter?
+    ): FriendKeyChain? {
+        val contactRequest = import.contactRequest
+        val contactIdentity = import.contactIdentity
+        val sent = contactRequest.ownerId == uniqueIdentifier
+        val ourKeyIndex = if (sent) contactRequest.senderKeyIndex else contactRequest.recipientKeyIndex
+        val contactKeyIndex = if (sent) contactRequest.recipientKeyIndex else contactRequest.senderKeyIndex
+
+        val contactIdentityPublicKey = contactIdentity.getPublicKeyById(contactKeyIndex)
+            ?: throw IllegalArgumentException("index $contactKeyIndex does not exist for $contactIdentity")
+        val cacheKey = SharedKeyCache.Key(ourKeyIndex, contactIdentity.id, contactKeyIndex)
+        val sharedKey = getOrDeriveSharedKey(cacheKey, encryptionKey) {
+            KeyCrypterECDH().deriveKey(identityKey(ourKeyIndex, contactIdentityPublicKey.type), contactIdentityPublicKey.getKey())
+        }
+        val xpub = decryptExtendedPublicKey(contactRequest.encryptedPublicKey, sharedKey)
+
+        return if (sent) {
+            val contactKeyChain = FriendKeyChain(seed(), null, FriendKeyChain.getRootPath(params), 0, uniqueId, contactIdentity.id.toSha256Hash())
+            val ourContactXpub = contactKeyChain.watchingKey.serializeContactPub()
+            val ourSerializedXpub = DeterministicKey.deserializeContactPub(params, ourContactXpub).serializePubB58(params)
+            // check that this contactRequest is for the default account
+            if (!xpub.contentEquals(ourSerializedXpub)) {
+                log.warn("contactRequest does not match account 0")
+                null
+            } else if (wallet!!.isEncrypted) {
+                contactKeyChain.toEncrypted(wallet!!.keyCrypter, encryptionKey)
+            } else {
+                contactKeyChain
+            }
+        } else {
+            val contact = EvolutionContact(uniqueId, account, contactIdentity.id.toSha256Hash(), accountReferenceOf(contactRequest))
+            FriendKeyChain(wallet!!.params, xpub, contact)
+        }
+    }
+
+    private fun accountReferenceOf(contactRequest: ContactRequest): Int {
+        return contactRequest.document.data["accountReference"] as? Int ?: 0 // default account reference
+    }
+
     fun getContactNextPaymentAddress(contactId: Identifier, accountReference: Int): Address {
         return wallet!!.currentAddress(
             EvolutionContact(uniqueIdString, account, contactId.toString(), accountReference),
@@ -1895,6 +1968,21 @@ class BlockchainIdentity {
     }
 
     fun getAccountReference(encryptionKey: KeyParameter?, fromIdentity: Identity): Int {
+        return accountReferenceCache.getOrPut(Pair(account, fromIdentity.id)) {
+            calculateAccountReference(encryptionKey, fromIdentity)
+        }
+    }
+
+    /**
+     * Removes the cached shared keys and account references of contacts, which should be done
+     * when the wallet is locked
+     */
+    fun clearKeyCaches() {
+        sharedKeyCache.clear()
+        accountReferenceCache.clear()
+    }
+
+    private fun calculateAccountReference(encryptionKey: KeyParameter?, fromIdentity: Identity): Int {
         val privateKey = maybeDecryptKey(0, IdentityPublicKey.Type.ECDSA_SECP256K1, encryptionKey)
 
         val receiveChain = getReceiveFromContactChain(fromIdentity, encryptionKey)
@@ -1930,35 +2018,35 @@ class BlockchainIdentity {
     }
 
     // Transaction Metadata Methods
+
+    /**
+     * Publishes the items in as few documents as possible
+     *
+     * @param version the format of the items before encryption, see [TxMetadataDocument.encode].
+     * [TxMetadataDocument.VERSION_DEFLATE_CBOR] fits more items into each document, but the
+     * documents can only be read by clients that support compression.
+     */
+    @JvmOverloads
     @Throws(KeyCrypterException::class)
-    fun publishTxMetaData(txMetadataItems: List<TxMetadataItem>, keyParameter: KeyParameter?) {
+    fun publishTxMetaData(
+        txMetadataItems: List<TxMetadataItem>,
+        keyParameter: KeyParameter?,
+        version: Int = TxMetadataDocument.VERSION_CBOR
+    ) {
         val keyIndex = 1
         val encryptionKeyIndex = 0
         val encryptionKey = privateKeyAtPath(keyIndex, TxMetadataDocument.childNumber, encryptionKeyIndex, IdentityPublicKey.Type.ECDSA_SECP256K1, keyParameter)
 
-        var lastItem: TxMetadataItem? = null
         var currentIndex = 0
         log.info("publish ${txMetadataItems.size} by breaking it up into pieces")
         while (currentIndex < txMetadataItems.size) {
-            var estimatedDocSize = 0
-            val currentMetadataItems = arrayListOf<TxMetadataItem>()
-
             log.info("publish: determine how items can go in the next txmetadata document: $currentIndex")
-            while (currentIndex < txMetadataItems.size) {
-                lastItem = txMetadataItems[currentIndex]
-                val estimatedItemSize = lastItem.getSize() + 4
-                if ((estimatedDocSize + estimatedItemSize) < TxMetadataDocument.MAX_ENCRYPTED_SIZE) {
-                    estimatedDocSize += estimatedItemSize
-                    currentMetadataItems.add(lastItem)
-                    currentIndex++
-                    log.info("publish: we can add another document for a total of ${currentMetadataItems.size}")
-                } else {
-                    break // leave this loop
-                }
-            }
+            val endIndex = txMetadataBatchEnd(txMetadataItems, currentIndex, version)
+            require(endIndex > currentIndex) { "tx metadata item $currentIndex is larger than a document" }
+            val currentMetadataItems = txMetadataItems.subList(currentIndex, endIndex)
 
             log.info("publishing ${currentMetadataItems.size} items of ${txMetadataItems.size}")
-            val metadataBytes = Cbor.encode(currentMetadataItems.map { it.toObject() })
+            val metadataBytes = TxMetadataDocument.encode(currentMetadataItems, version)
 
             // encrypt data
             val cipher = KeyCrypterAESCBC()
@@ -1978,10 +2066,47 @@ class BlockchainIdentity {
                 KeyIndexPurpose.AUTHENTICATION.ordinal,
                 signingKey
             )
-            currentMetadataItems.clear()
+            currentIndex = endIndex
         }
     }
 
+    /**
+     * Finds the most items starting at [start] whose encoding fits in a document.  The compressed
+     * size is not known until the items are compressed, so the number is found by doubling and
+     * then a binary search, which compresses the items a logarithmic number of times.
+     *
+     * @return the end index (exclusive) of the items
+     */
+    private fun txMetadataBatchEnd(items: List<TxMetadataItem>, start: Int, version: Int): Int {
+        val fits = { end: Int ->
+            TxMetadataDocument.encode(items.subList(start, end), version).size < TxMetadataDocument.MAX_ENCRYPTED_SIZE
+        }
+        var good = start
+        var bad = items.size + 1
+        var count = 1
+        while (true) {
+            val end = minOf(start + count, items.size)
+            if (!fits(end)) {
+                bad = end
+                break
+            }
+            good = end
+            if (end == items.size) {
+                break
+            }
+            count *= 2
+        }
+        while (bad - good > 1) {
+            val middle = (good + bad) / 2
+            if (fits(middle)) {
+                good = middle
+            } else {
+                bad = middle
+            }
+        }
+        return good
+    }
+
     fun getTxMetaData(createdAfter: Long = -1, keyParameter: KeyParameter?): Map<TxMetadataDocument, List<TxMetadataItem>> {
         val documents = TxMetadata(platform).get(uniqueIdentifier, createdAfter)
 
@@ -2012,9 +2137,7 @@ class BlockchainIdentity {
         )
 
         val decryptedData = cipher.decrypt(encryptedData, aesKeyParameter)
-        val decryptedList = Cbor.decodeList(decryptedData)
-
-        return decryptedList.map { TxMetadataItem(it as Map<String, Any?>) }
+        return TxMetadataDocument.decode(decryptedData)
     }
 
     fun deleteDocument(typeLocator: String, documentId: Identifier, keyParameter: KeyParameter?): Boolean {
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.dashpay
+
+import org.dashj.platform.dpp.identifier.Identifier
+
+/**
+ * An in memory index of contact requests by sender and recipient
+ *
+ * A contact is established when both users have sent a contact request to each other.  The
+ * requests are indexed by (owner, toUser) and the established contacts and the pending requests
+ * of each user are maintained as requests are added, so that:
+ *
+ * - [isEstablished] and [get] take constant time
+ * - [getEstablishedContacts], [getPendingIncoming] and [getPendingOutgoing] take time
+ *   proportional to the number of contacts of the user
+ * - [getMutualContactCount] takes time proportional to the smaller number of contacts
+ *
+ * When more than one request has been sent from one user to another, such as for different
+ * accounts, the first one created is kept.  A request that is added again with a higher
+ * revision or a later $updatedAt replaces the stored copy.
+ */
+class ContactGraph {
+    private val requests = hashMapOf<Pair<Identifier, Identifier>, ContactRequest>()
+    private val outgoing = hashMapOf<Identifier, MutableSet<Identifier>>()
+    private val incoming = hashMapOf<Identifier, MutableSet<Identifier>>()
+    private val established = hashMapOf<Identifier, MutableSet<Identifier>>()
+    private var establishedCount = 0
+
+    /** the number of contact requests */
+    val size: Int
+        @Synchronized get() = requests.size
+
+    /** the number of established contacts, counting each pair of users once */
+    val establishedContactCount: Int
+        @Synchronized get() = establishedCount
+
+    /**
+     * @return true if the request was added or replaced the stored copy of the same request,
+     * false if the stored copy is as new or another request from its owner to its recipient is
+     * already in the graph and was created at the same time or earlier
+     */
+    @Synchronized
+    fun add(contactRequest: ContactRequest): Boolean {
+        val owner = contactRequest.ownerId
+        val toUser = contactRequest.toUserId
+        val key = Pair(owner, toUser)
+        val existing = requests[key]
+        if (existing != null) {
+            val replace = if (existing.id == contactRequest.id) {
+                isNewer(contactRequest, existing)
+            } else {
+                (contactRequest.createdAt ?: 0L) < (existing.createdAt ?: 0L)
+            }
+            if (!replace) {
+                return false
+            }
+            requests[key] = contactRequest
+            return true
+        }
+
+        requests[key] = contactRequest
+        outgoing.getOrPut(owner) { hashSetOf() }.add(toUser)
+        incoming.getOrPut(toUser) { hashSetOf() }.add(owner)
+        if (owner != toUser && requests.containsKey(Pair(toUser, owner))) {
+            established.getOrPut(owner) { hashSetOf() }.add(toUser)
+            established.getOrPut(toUser) { hashSetOf() }.add(owner)
+            establishedCount++
+        }
+        return true
+    }
+
+    private fun isNewer(contactRequest: ContactRequest, existing: ContactRequest): Boolean {
+        return contactRequest.revision > existing.revision ||
+            (contactRequest.revision == existing.revision && (contactRequest.updatedAt ?: 0L) > (existing.updatedAt ?: 0L))
+    }
+
+    /**
+     * @return the number of requests that were added or replaced
+     */
+    @Synchronized
+    fun addAll(contactRequests: Collection<ContactRequest>): Int {
+        return contactRequests.count { add(it) }
+    }
+
+    /**
+     * @return the contact request sent by [ownerId] to [toUserId]
+     */
+    @Synchronized
+    fun get(ownerId: Identifier, toUserId: Identifier): ContactRequest? {
+        return requests[Pair(ownerId, toUserId)]
+    }
+
+    @Synchronized
+    fun isEstablished(userId: Identifier, contactId: Identifier): Boolean {
+        return established[userId]?.contains(contactId) ?: false
+    }
+
+    /**
+     * @return the users that have sent contact requests to and received contact requests from [userId]
+     */
+    @Synchronized
+    fun getEstablishedContacts(userId: Identifier): Set<Identifier> {
+        return established[userId]?.toSet() ?: setOf()
+    }
+
+    /**
+     * @return the requests sent to [userId] that have not been answered
+     */
+    @Synchronized
+    fun getPendingIncoming(userId: Identifier): List<ContactRequest> {
+        val contacts = established[userId]
+        return incoming[userId].orEmpty()
+            .filter { contacts == null || !contacts.contains(it) }
+            .map { requests.getValue(Pair(it, userId)) }
+    }
+
+    /**
+     * @return the requests sent by [userId] that have not been answered
+     */
+    @Synchronized
+    fun getPendingOutgoing(userId: Identifier): List<ContactRequest> {
+        val contacts = established[userId]
+        return outgoing[userId].orEmpty()
+            .filter { contacts == null || !contacts.contains(it) }
+            .map { requests.getValue(Pair(userId, it)) }
+    }
+
+    /**
+     * @return the number of users that are established contacts of both [userId] and [otherUserId]
+     */
+    @Synchronized
+    fun getMutualContactCount(userId: Identifier, otherUserId: Identifier): Int {
+        val contacts = established[userId] ?: return 0
+        val otherContacts = established[otherUserId] ?: return 0
+        val (smaller, larger) = if (contacts.size <= otherContacts.size) {
+            Pair(contacts, otherContacts)
+        } else {
+            Pair(otherContacts, contacts)
+        }
+        return smaller.count { larger.contains(it) }
+    }
+
+    /**
+     * @return the users that have sent or received at least one contact request
+     */
+    @Synchronized
+    fun getUsers(): Set<Identifier> {
+        return outgoing.keys + incoming.keys
+    }
+
+    /**
+     * @return each pair of requests that establish a contact, as (sent, received) from the point
+     * of view of the owner of the first request.  Each contact is returned twice, once for each user.
+     */
+    @Synchronized
+    fun getEstablishedPairs(): List<Pair<ContactRequest, ContactRequest>> {
+        val pairs = ArrayList<Pair<ContactRequest, ContactRequest>>(establishedCount * 2)
+        for ((userId, contacts) in established) {
+            for (contactId in contacts) {
+                pairs.add(Pair(requests.getValue(Pair(userId, contactId)), requests.getValue(Pair(contactId, userId))))
+            }
+        }
+        return pairs
+    }
+
+    @Synchronized
+    fun clear() {
+        requests.clear()
+        outgoing.clear()
+        incoming.clear()
+        established.clear()
+        establishedCount = 0
+    }
+}
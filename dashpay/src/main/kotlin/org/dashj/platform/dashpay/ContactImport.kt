@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.dashpay
+
+import org.dashj.platform.dpp.identity.Identity
+
+/**
+ * A contact request to import with [BlockchainIdentity.importContactRequests]
+ *
+ * @param contactIdentity the identity of the other party: the recipient of a request that we
+ * sent or the sender of a request that we received
+ */
+class ContactImport(val contactIdentity: Identity, val contactRequest: ContactRequest) {
+
+    /**
+     * The outcome of [BlockchainIdentity.importContactRequests]
+     *
+     * @property added the requests for which a keychain was added to the wallet
+     * @property failed the requests that could not be decrypted, with the reason
+     */
+    class Result(val added: List<ContactRequest>, val failed: Map<ContactRequest, Exception>) {
+        val addedKeyChains: Boolean
+            get() = added.isNotEmpty()
+    }
+}
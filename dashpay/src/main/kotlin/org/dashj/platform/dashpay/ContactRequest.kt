@@ -14,10 +14,8 @@ import org.dashj.platform.sdk.platform.AbstractDocument
 import org.dashj.platform.sdk.platform.Platform
 
 class ContactRequest(document: Document) : AbstractDocument(document) {
-    val toUserId: Identifier
-        get() = Identifier.from(document.data["toUserId"])
-    val encryptedPublicKey: ByteArray
-        get() = getFieldByteArray("encryptedPublicKey")!!
+    val toUserId: Identifier by field { Identifier.from(document.data["toUserId"]) }
+    val encryptedPublicKey: ByteArray by field { getFieldByteArray("encryptedPublicKey")!! }
     val senderKeyIndex: Int
         get() = document.data["senderKeyIndex"] as Int
     val recipientKeyIndex: Int
@@ -26,10 +24,8 @@ class ContactRequest(document: Document) : AbstractDocument(document) {
         get() = document.data["accountReference"] as Int
     val version: Int
         get() = accountReference ushr 28
-    val encryptedAccountLabel: ByteArray?
-        get() = getFieldByteArray("encryptedAccountLabel")
-    val autoAcceptProof: ByteArray?
-        get() = getFieldByteArray("autoAcceptProof")
+    val encryptedAccountLabel: ByteArray? by field { getFieldByteArray("encryptedAccountLabel") }
+    val autoAcceptProof: ByteArray? by field { getFieldByteArray("autoAcceptProof") }
     val coreHeightCreatedAt: Int
         get() = document.data["coreHeightCreatedAt"] as Int
 
@@ -1,8 +1,6 @@
 package org.dashj.platform.dashpay
 
 import java.util.Date
-import java.util.Timer
-import kotlin.concurrent.timerTask
 import org.bouncycastle.crypto.params.KeyParameter
 import org.dashj.platform.dapiclient.model.DocumentQuery
 import org.dashj.platform.dashpay.callback.SendContactRequestCallback
@@ -12,11 +10,26 @@ import org.dashj.platform.dpp.identity.Identity
 import org.dashj.platform.dpp.identity.IdentityPublicKey
 import org.dashj.platform.sdk.platform.Documents
 import org.dashj.platform.sdk.platform.Platform
+import org.dashj.platform.sdk.platform.QueryTemplate
 
 class ContactRequests(val platform: Platform) {
 
     companion object {
         const val CONTACTREQUEST_DOCUMENT = "dashpay.contactRequest"
+
+        // contact requests to or from a user, keyed by "toUserId" or "\$ownerId"
+        private val userQueries = listOf("toUserId", "\$ownerId").associateWith {
+            QueryTemplate.builder().where(it, "==", QueryTemplate.PARAM).build()
+        }
+
+        // contact requests to or from a user that were created after a time
+        private val getQueries = listOf("toUserId", "\$ownerId").associateWith {
+            QueryTemplate.builder()
+                .where(it, "==", QueryTemplate.PARAM)
+                .where("\$createdAt", ">", QueryTemplate.PARAM)
+                .orderBy("\$createdAt", true)
+                .build()
+        }
     }
 
     fun create(fromUser: BlockchainIdentity, toUser: Identity, aesKey: KeyParameter?): ContactRequest {
@@ -102,30 +115,21 @@ class ContactRequests(val platform: Platform) {
         retrieveAll: Boolean = true,
         startAfter: Identifier? = null
     ): List<Document> {
-        val documentQuery = DocumentQuery.Builder()
-
-        if (toUserId) {
-            documentQuery.where(listOf("toUserId", "==", userId))
-        } else {
-            documentQuery.where(listOf("\$ownerId", "==", userId))
-        }
+        val userField = if (toUserId) "toUserId" else "\$ownerId"
         // In v0.21, if afterTime == 0, $createdAt was not included in the where clauses
         // With the dashpay contract in v0.22, $createdAt must be included along with
         // toUserId or ownerId
-        if (afterTime >= 0) {
-            documentQuery.where("\$createdAt", ">", afterTime)
-            documentQuery.orderBy("\$createdAt", true)
-        }
-        if (retrieveAll) {
-            documentQuery.limit(-1)
+        val documentQuery = if (afterTime >= 0) {
+            getQueries.getValue(userField).bind(listOf(userId, afterTime), limit(retrieveAll), startAfter)
         } else {
-            documentQuery.limit(Documents.DOCUMENT_LIMIT)
+            userQueries.getValue(userField).bind(listOf(userId), limit(retrieveAll), startAfter)
         }
 
-        return platform.documents.getAll(
-            CONTACTREQUEST_DOCUMENT,
-            documentQuery.startAfter(startAfter).build()
-        )
+        return platform.documents.getAll(CONTACTREQUEST_DOCUMENT, documentQuery)
+    }
+
+    private fun limit(retrieveAll: Boolean): Int {
+        return if (retrieveAll) -1 else Documents.DOCUMENT_LIMIT
     }
 
     suspend fun watchContactRequest(
@@ -143,11 +147,7 @@ class ContactRequests(val platform: Platform) {
             return result[0]
         } else {
             if (retryCount > 0) {
-                val nextDelay = delayMillis * when (retryDelayType) {
-                    RetryDelayType.SLOW20 -> 5 / 4
-                    RetryDelayType.SLOW50 -> 3 / 2
-                    else -> 1
-                }
+                val nextDelay = retryDelayType.nextDelay(delayMillis)
                 kotlinx.coroutines.delay(nextDelay)
                 return watchContactRequest(fromUserId, toUserId, retryCount - 1, nextDelay, retryDelayType)
             }
@@ -155,6 +155,12 @@ class ContactRequests(val platform: Platform) {
         return null
     }
 
+    /**
+     * Waits for the contact request from [fromUserId] to [toUserId] to appear on Platform.  Pending
+     * watches are checked together using one query per sender.
+     *
+     * @return WatchHandle that can cancel the watch
+     */
     fun watchContactRequest(
         fromUserId: Identifier,
         toUserId: Identifier,
@@ -162,28 +168,14 @@ class ContactRequests(val platform: Platform) {
         delayMillis: Long,
         retryDelayType: RetryDelayType,
         callback: SendContactRequestCallback
-    ) {
-        val documentQuery = DocumentQuery.builder()
-        documentQuery.where("\$ownerId", "==", fromUserId)
-            .where("toUserId", "==", toUserId)
-        val result = platform.documents.get(CONTACTREQUEST_DOCUMENT, documentQuery.build())
-
-        if (result.isNotEmpty()) {
-            callback.onComplete(fromUserId, toUserId)
-        } else {
-            if (retryCount > 0) {
-                Timer("monitorSendContactRequestStatus", false).schedule(
-                    timerTask {
-                        val nextDelay = delayMillis * when (retryDelayType) {
-                            RetryDelayType.SLOW20 -> 5 / 4
-                            RetryDelayType.SLOW50 -> 3 / 2
-                            else -> 1
-                        }
-                        watchContactRequest(fromUserId, toUserId, retryCount - 1, nextDelay, retryDelayType, callback)
-                    },
-                    delayMillis
-                )
-            } else callback.onTimeout(fromUserId, toUserId)
-        }
+    ): WatchHandle {
+        return WatchEngine.forPlatform(platform).contactRequestWatcher.watch(
+            listOf(Pair(fromUserId, toUserId)),
+            retryCount,
+            delayMillis,
+            retryDelayType,
+            onComplete = { callback.onComplete(fromUserId, toUserId) },
+            onTimeout = { callback.onTimeout(fromUserId, toUserId) }
+        )
     }
 }
@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.dashpay
+
+import java.util.Arrays
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.sdk.platform.Platform
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * Suggests contacts to a user from the contacts of their contacts, ranked by the number of
+ * mutual established contacts
+ *
+ * The contact requests are indexed once when this is created, after which each suggestion
+ * takes time proportional to the number of contacts of the user's contacts.  Each identity is
+ * interned as an int and the established contacts are stored as sorted adjacency arrays
+ * (compressed sparse rows), which keeps network sized graphs compact.
+ *
+ * Create it with [fromContactRequests] with the requests of the whole network, or with [forUser]
+ * which fetches only the requests needed to make suggestions for one user.
+ */
+class ContactSuggestions private constructor(
+    private val ids: Array<Identifier>,
+    private val indexes: Map<Identifier, Int>,
+    private val requests: LongArray,
+    private val offsets: IntArray,
+    private val contacts: IntArray
+) {
+    companion object {
+        const val DEFAULT_LIMIT = 10
+        private val log: Logger = LoggerFactory.getLogger(ContactSuggestions::class.java)
+
+        private fun edge(from: Int, to: Int): Long = (from.toLong() shl 32) or to.toLong()
+
+        @JvmStatic
+        fun fromContactRequests(contactRequests: Collection<ContactRequest>): ContactSuggestions {
+            val indexes = hashMapOf<Identifier, Int>()
+            val ids = arrayListOf<Identifier>()
+            val intern = { id: Identifier ->
+                indexes.getOrPut(id) {
+                    ids.add(id)
+                    ids.size - 1
+                }
+            }
+
+            // every request as a sorted list of (owner, toUser) edges
+            var requests = LongArray(contactRequests.size)
+            var count = 0
+            for (contactRequest in contactRequests) {
+                val owner = intern(contactRequest.ownerId)
+                val toUser = intern(contactRequest.toUserId)
+                if (owner != toUser) {
+                    requests[count++] = edge(owner, toUser)
+                }
+            }
+            requests = requests.copyOf(count)
+            requests.sort()
+            requests = requests.distinct().toLongArray()
+
+            // a contact is established if the reverse request exists; since the requests are sorted
+            // by owner, the contacts of each user are contiguous and sorted
+            val offsets = IntArray(ids.size + 1)
+            val contacts = IntArray(requests.size)
+            count = 0
+            var user = 0
+            for (request in requests) {
+                val owner = (request ushr 32).toInt()
+                val toUser = request.toInt()
+                while (user < owner) {
+                    offsets[++user] = count
+                }
+                if (Arrays.binarySearch(requests, edge(toUser, owner)) >= 0) {
+                    contacts[count++] = toUser
+                }
+            }
+            while (user < ids.size) {
+                offsets[++user] = count
+            }
+
+            log.info("indexed ${requests.size} contact requests between ${ids.size} identities, ${count / 2} contacts")
+            return ContactSuggestions(ids.toTypedArray(), indexes, requests, offsets, contacts.copyOf(count))
+        }
+
+        /**
+         * Fetches the contact requests of [userId] and of each of their established contacts,
+         * which is all that is needed to make suggestions for [userId]
+         */
+        @JvmStatic
+        fun forUser(platform: Platform, userId: Identifier): ContactSuggestions {
+            val contactRequests = ContactRequests(platform)
+            // the sent and received requests of each user are fetched with a single level of
+            // fan out, so that no task on the pool waits for other tasks
+            val fetch = { userIds: Collection<Identifier> ->
+                val queries = userIds.flatMap { listOf(Pair(it, false), Pair(it, true)) }
+                platform.executor.fanOutMap(queries) { (id, toUserId) -> contactRequests.get(id, toUserId = toUserId) }
+                    .flatten()
+                    .map { ContactRequest(it) }
+            }
+            val userRequests = fetch(listOf(userId))
+            val graph = ContactGraph()
+            graph.addAll(userRequests)
+            val contacts = graph.getEstablishedContacts(userId)
+            return fromContactRequests(userRequests + fetch(contacts))
+        }
+    }
+
+    /**
+     * A suggested contact
+     *
+     * @property identityId the identity to suggest
+     * @property mutualContactCount the number of established contacts in common
+     */
+    data class Suggestion(val identityId: Identifier, val mutualContactCount: Int)
+
+    /** the number of identities that have sent or received a contact request */
+    val identityCount: Int
+        get() = ids.size
+
+    /** the number of established contacts, counting each pair of users once */
+    val contactCount: Int
+        get() = contacts.size / 2
+
+    private fun hasRequest(from: Int, to: Int): Boolean {
+        return Arrays.binarySearch(requests, edge(from, to)) >= 0
+    }
+
+    private fun contactsOf(user: Int): IntRange = offsets[user] until offsets[user + 1]
+
+    /**
+     * @return the established contacts of [userId]
+     */
+    fun getContacts(userId: Identifier): List<Identifier> {
+        val user = indexes[userId] ?: return listOf()
+        return contactsOf(user).map { ids[contacts[it]] }
+    }
+
+    /**
+     * @return the established contacts that [userId] and [otherUserId] have in common
+     */
+    fun getMutualContacts(userId: Identifier, otherUserId: Identifier): List<Identifier> {
+        val user = indexes[userId] ?: return listOf()
+        val other = indexes[otherUserId] ?: return listOf()
+        // both lists are sorted, so they are merged
+        val result = arrayListOf<Identifier>()
+        var i = offsets[user]
+        var j = offsets[other]
+        while (i < offsets[user + 1] && j < offsets[other + 1]) {
+            when {
+                contacts[i] < contacts[j] -> i++
+                contacts[i] > contacts[j] -> j++
+                else -> {
+                    result.add(ids[contacts[i]])
+                    i++
+                    j++
+                }
+            }
+        }
+        return result
+    }
+
+    /**
+     * Ranks the contacts of the contacts of [userId] by the number of mutual contacts
+     *
+     * @param limit the most suggestions to return
+     * @param excludeRequested exclude identities that have a pending contact request to or from [userId]
+     * @return the suggestions, the ones with the most mutual contacts first
+     */
+    @JvmOverloads
+    fun suggest(userId: Identifier, limit: Int = DEFAULT_LIMIT, excludeRequested: Boolean = true): List<Suggestion> {
+        val user = indexes[userId] ?: return listOf()
+        val mutualCounts = IntArray(ids.size)
+        val candidates = arrayListOf<Int>()
+
+        // existing contacts are marked so that they are not counted
+        for (i in contactsOf(user)) {
+            mutualCounts[contacts[i]] = -1
+        }
+        mutualCounts[user] = -1
+
+        for (i in contactsOf(user)) {
+            for (j in contactsOf(contacts[i])) {
+                val candidate = contacts[j]
+                if (mutualCounts[candidate] >= 0) {
+                    if (mutualCounts[candidate] == 0) {
+                        candidates.add(candidate)
+                    }
+                    mutualCounts[candidate]++
+                }
+            }
+        }
+
+        return candidates.asSequence()
+            .filter { !excludeRequested || !(hasRequest(user, it) || hasRequest(it, user)) }
+            .sortedWith(compareByDescending<Int> { mutualCounts[it] }.thenBy { it })
+            .take(limit)
+            .map { Suggestion(ids[it], mutualCounts[it]) }
+            .toList()
+    }
+}
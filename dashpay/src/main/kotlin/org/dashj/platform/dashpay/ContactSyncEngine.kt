@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.dashpay
+
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.util.concurrent.Callable
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+import org.dashj.platform.dashpay.callback.ContactRequestsUpdatedCallback
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.util.Cbor
+import org.dashj.platform.sdk.platform.Platform
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * Keeps the sent and received contact requests of [userId] up to date with incremental queries
+ *
+ * For each direction, a cursor holds the $createdAt of the newest request.  [sync] only
+ * requests documents created after the cursor (less [overlapMillis]), merges them by document id
+ * and notifies listeners of the requests that are new or changed.  When nothing has changed, a sync
+ * costs one empty page per direction.
+ *
+ * The requests and cursors can be saved to a file with [save] so that a restart does not begin
+ * again from the first request.
+ *
+ * @param overlapMillis how far before the cursor to query again, since $createdAt is set by the
+ * sender and a request may arrive after newer ones
+ */
+class ContactSyncEngine @JvmOverloads constructor(
+    val platform: Platform,
+    val userId: Identifier,
+    val overlapMillis: Long = DEFAULT_OVERLAP
+) {
+    companion object {
+        private val log: Logger = LoggerFactory.getLogger(ContactSyncEngine::class.java)
+        const val DEFAULT_OVERLAP = 12 * 60 * 1000L
+        private val MAGIC = byteArrayOf('D'.toByte(), 'P'.toByte(), 'C'.toByte(), 'S'.toByte())
+        private const val VERSION = 2
+
+        // version 1 also saved the $id of the newest request, which is skipped
+        private const val VERSION_WITH_LAST_ID = 1
+    }
+
+    enum class Direction {
+        SENT, // $ownerId == userId
+        RECEIVED // toUserId == userId
+    }
+
+    /**
+     * The position of the newest contact request in one direction
+     */
+    class Cursor(val createdAt: Long = 0L) {
+        override fun toString(): String {
+            return "Cursor(createdAt=$createdAt)"
+        }
+    }
+
+    /**
+     * The requests that were new or changed in a call to [sync]
+     */
+    class Result(val sent: List<ContactRequest>, val received: List<ContactRequest>) {
+        val isEmpty: Boolean
+            get() = sent.isEmpty() && received.isEmpty()
+    }
+
+    private val contactRequests = ContactRequests(platform)
+    private val requests = Direction.values().associate { it to LinkedHashMap<Identifier, ContactRequest>() }
+    private val cursors = Direction.values().associate { it to Cursor() }.toMutableMap()
+    private val listeners = CopyOnWriteArrayList<ContactRequestsUpdatedCallback>()
+
+    fun addListener(listener: ContactRequestsUpdatedCallback) {
+        listeners.add(listener)
+    }
+
+    fun removeListener(listener: ContactRequestsUpdatedCallback) {
+        listeners.remove(listener)
+    }
+
+    @Synchronized
+    fun getCursor(direction: Direction): Cursor = cursors.getValue(direction)
+
+    @Synchronized
+    fun getContactRequests(direction: Direction): List<ContactRequest> = requests.getValue(direction).values.toList()
+
+    /** all sent and received contact requests */
+    val allContactRequests: List<ContactRequest>
+        @Synchronized get() = requests.values.flatMap { it.values }
+
+    private fun fetch(direction: Direction): List<ContactRequest> {
+        val cursor = getCursor(direction)
+        // ContactRequests.get returns requests where $createdAt > afterTime
+        val afterTime = if (cursor.createdAt == 0L) 0L else maxOf(0L, cursor.createdAt - overlapMillis - 1)
+        return contactRequests.get(userId, direction == Direction.RECEIVED, afterTime, retrieveAll = true)
+            .map { ContactRequest(it) }
+    }
+
+    /**
+     * Adds the fetched requests to [direction], advancing its cursor
+     *
+     * @return the requests that were not known or have changed
+     */
+    @Synchronized
+    private fun merge(direction: Direction, fetched: List<ContactRequest>): List<ContactRequest> {
+        val known = requests.getValue(direction)
+        var cursor = cursors.getValue(direction)
+        val updated = arrayListOf<ContactRequest>()
+        for (contactRequest in fetched) {
+            val id = contactRequest.document.id
+            val previous = known[id]
+            if (previous == null || previous.revision != contactRequest.revision || previous.updatedAt != contactRequest.updatedAt) {
+                known[id] = contactRequest
+                updated.add(contactRequest)
+            }
+            val createdAt = contactRequest.createdAt ?: 0L
+            if (createdAt > cursor.createdAt) {
+                cursor = Cursor(createdAt)
+            }
+        }
+        cursors[direction] = cursor
+        return updated
+    }
+
+    /**
+     * Queries both directions concurrently and merges the results
+     *
+     * @return the requests that are new or have changed since the last sync
+     */
+    fun sync(): Result {
+        val (sent, received) = platform.executor.fanOut(
+            Callable { fetch(Direction.SENT) },
+            Callable { fetch(Direction.RECEIVED) }
+        )
+        val result = Result(merge(Direction.SENT, sent), merge(Direction.RECEIVED, received))
+        log.info("contact sync: ${sent.size} sent and ${received.size} received fetched, ${result.sent.size} and ${result.received.size} new or changed")
+        if (!result.isEmpty) {
+            listeners.forEach { it.onContactRequestsUpdated(result.sent, result.received) }
+        }
+        return result
+    }
+
+    @Synchronized
+    fun save(file: File) {
+        val temp = File(file.path + ".tmp")
+        DataOutputStream(BufferedOutputStream(GZIPOutputStream(FileOutputStream(temp)))).use { output ->
+            output.write(MAGIC)
+            output.writeByte(VERSION)
+            output.write(userId.toBuffer())
+            for (direction in Direction.values()) {
+                val cursor = cursors.getValue(direction)
+                output.writeLong(cursor.createdAt)
+                val known = requests.getValue(direction)
+                output.writeInt(known.size)
+                for (contactRequest in known.values) {
+                    val bytes = Cbor.encode(contactRequest.toObject())
+                    output.writeInt(bytes.size)
+                    output.write(bytes)
+                }
+            }
+        }
+        if (!temp.renameTo(file)) {
+            file.delete()
+            if (!temp.renameTo(file)) {
+                throw IOException("unable to write contact sync state to $file")
+            }
+        }
+    }
+
+    /**
+     * Replaces the requests and cursors with those saved by [save]
+     */
+    @Synchronized
+    fun load(file: File) {
+        DataInputStream(BufferedInputStream(GZIPInputStream(FileInputStream(file)))).use { input ->
+            val magic = ByteArray(MAGIC.size)
+            input.readFully(magic)
+            if (!magic.contentEquals(MAGIC)) {
+                throw IOException("$file is not a contact sync file")
+            }
+            val version = input.readUnsignedByte()
+            if (version != VERSION && version != VERSION_WITH_LAST_ID) {
+                throw IOException("unsupported contact sync file version: $version")
+            }
+            val savedUserId = readIdentifier(input)
+            if (savedUserId != userId) {
+                throw IOException("$file belongs to $savedUserId, not $userId")
+            }
+            for (direction in Direction.values()) {
+                val createdAt = input.readLong()
+                if (version == VERSION_WITH_LAST_ID && input.readBoolean()) {
+                    readIdentifier(input)
+                }
+                val known = requests.getValue(direction)
+                known.clear()
+                val count = input.readInt()
+                for (i in 0 until count) {
+                    val bytes = ByteArray(input.readInt())
+                    input.readFully(bytes)
+                    val contactRequest = ContactRequest(platform.dpp.document.createFromObject(Cbor.decode(bytes)))
+                    known[contactRequest.document.id] = contactRequest
+                }
+                cursors[direction] = Cursor(createdAt)
+            }
+        }
+    }
+
+    private fun readIdentifier(input: DataInputStream): Identifier {
+        val bytes = ByteArray(32)
+        input.readFully(bytes)
+        return Identifier.from(bytes)
+    }
+}
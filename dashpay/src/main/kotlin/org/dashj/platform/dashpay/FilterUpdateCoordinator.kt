@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.dashpay
+
+import java.util.concurrent.ScheduledFuture
+import org.bitcoinj.core.PeerGroup
+import org.dashj.platform.sdk.platform.Platform
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * Merges bursts of contact keychain additions into a single bloom filter recalculation
+ *
+ * Each keychain that is added to the wallet changes the bloom filter.  Rather than recalculating
+ * and sending the filter for each one, [requestUpdate] waits until no more requests have arrived
+ * for [debounceMillis], but no longer than [maxDelayMillis] after the first request, and then
+ * calls [recalculate] once.  Within [batch], such as while a wallet is restored, requests are
+ * held until the batch completes.
+ *
+ * @param recalculate recalculates and sends the bloom filter
+ * @param scheduler runs a task after a delay in milliseconds
+ * @param clock the current time in milliseconds
+ */
+class FilterUpdateCoordinator(
+    private val recalculate: () -> Unit,
+    private val scheduler: (Long, () -> Unit) -> ScheduledFuture<*>,
+    val debounceMillis: Long = DEFAULT_DEBOUNCE_MILLIS,
+    val maxDelayMillis: Long = DEFAULT_MAX_DELAY_MILLIS,
+    private val clock: () -> Long = { System.currentTimeMillis() }
+) {
+    companion object {
+        const val DEFAULT_DEBOUNCE_MILLIS = 500L
+        const val DEFAULT_MAX_DELAY_MILLIS = 5000L
+        private val log: Logger = LoggerFactory.getLogger(FilterUpdateCoordinator::class.java)
+    }
+
+    /**
+     * Recalculates the filters of [peerGroup] with [PeerGroup.FilterRecalculateMode.SEND_IF_CHANGED]
+     * using the scheduler of the [WatchEngine] of [platform]
+     */
+    constructor(peerGroup: PeerGroup, platform: Platform) : this(
+        { peerGroup.recalculateFastCatchupAndFilter(PeerGroup.FilterRecalculateMode.SEND_IF_CHANGED) },
+        { delayMillis, task -> WatchEngine.forPlatform(platform).schedule(delayMillis, task) }
+    )
+
+    private var pending = false
+    private var firstRequest = 0L
+    private var requestCount = 0
+    private var batchDepth = 0
+    private var future: ScheduledFuture<*>? = null
+
+    /** the number of times that [recalculate] has been called */
+    var updateCount = 0
+        private set
+
+    val isPending: Boolean
+        @Synchronized get() = pending
+
+    /**
+     * Requests a filter recalculation because keychains were added to the wallet
+     */
+    @Synchronized
+    fun requestUpdate() {
+        val now = clock()
+        if (!pending) {
+            pending = true
+            firstRequest = now
+            requestCount = 0
+        }
+        requestCount++
+        if (batchDepth == 0) {
+            schedule(now)
+        }
+    }
+
+    /**
+     * Holds the requests made while [block] runs and then makes at most one request
+     */
+    fun <T> batch(block: () -> T): T {
+        synchronized(this) { batchDepth++ }
+        try {
+            return block()
+        } finally {
+            synchronized(this) {
+                batchDepth--
+                if (batchDepth == 0 && pending) {
+                    schedule(clock())
+                }
+            }
+        }
+    }
+
+    /**
+     * Recalculates the filter now if there is a pending request
+     */
+    fun flush() {
+        synchronized(this) {
+            future?.cancel(false)
+            future = null
+        }
+        update()
+    }
+
+    private fun schedule(now: Long) {
+        future?.cancel(false)
+        val delayMillis = minOf(debounceMillis, firstRequest + maxDelayMillis - now).coerceAtLeast(0)
+        future = scheduler(delayMillis) { update() }
+    }
+
+    private fun update() {
+        val requests = synchronized(this) {
+            if (!pending || batchDepth > 0) {
+                return
+            }
+            pending = false
+            future = null
+            updateCount++
+            requestCount
+        }
+        log.info("recalculating the bloom filter for $requests keychain changes")
+        recalculate()
+    }
+}
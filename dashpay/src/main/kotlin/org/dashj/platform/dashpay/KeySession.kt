@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.dashpay
+
+import java.security.MessageDigest
+import java.util.Arrays
+import java.util.concurrent.ScheduledFuture
+import org.bouncycastle.crypto.params.KeyParameter
+
+/**
+ * Keeps the wallet encryption key and values derived from it, such as a decrypted identity
+ * key chain, in memory after the wallet has been unlocked once.  Decrypting the identity key
+ * chain is the most expensive part of signing a state transition or deriving a shared key, so
+ * that work is done once per session instead of once per operation.
+ *
+ * The session is locked when it has not been used for [idleTimeoutMillis] or when [lock] is
+ * called.  Locking overwrites the copy of the encryption key held by the session and drops all
+ * derived values.  Private keys held by bitcoinj as BigInteger cannot be overwritten and remain
+ * in memory until they are garbage collected.
+ *
+ * @param scheduler schedules the idle timeout check, or null to check only when the session is used
+ * @param clock the current time in milliseconds
+ */
+class KeySession(
+    private val scheduler: ((Long, () -> Unit) -> ScheduledFuture<*>)? = null,
+    private val clock: () -> Long = { System.currentTimeMillis() }
+) {
+    companion object {
+        const val DEFAULT_IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000L
+    }
+
+    private var keyParameter: KeyParameter? = null
+    private val values = hashMapOf<String, Any>()
+    private var lastUsed = 0L
+    private var expiry: ScheduledFuture<*>? = null
+    private val lockListeners = arrayListOf<() -> Unit>()
+
+    var idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS
+        private set
+
+    val isUnlocked: Boolean
+        @Synchronized get() {
+            checkExpiry()
+            return keyParameter != null
+        }
+
+    /**
+     * Starts a session with [keyParameter], locking the current session if it used a different key.
+     * A copy of the key is kept, so the caller may overwrite its own.
+     */
+    @Synchronized
+    fun unlock(keyParameter: KeyParameter, idleTimeoutMillis: Long = DEFAULT_IDLE_TIMEOUT_MILLIS) {
+        require(idleTimeoutMillis > 0) { "idleTimeoutMillis must be positive" }
+        if (this.keyParameter != null && !matches(keyParameter)) {
+            lock()
+        }
+        if (this.keyParameter == null) {
+            this.keyParameter = KeyParameter(keyParameter.key.copyOf())
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis
+        lastUsed = clock()
+        scheduleExpiry(idleTimeoutMillis)
+    }
+
+    /**
+     * Ends the session, overwriting the encryption key and dropping the derived values
+     */
+    fun lock() {
+        val listeners = synchronized(this) {
+            if (keyParameter == null) {
+                return
+            }
+            expiry?.cancel(false)
+            expiry = null
+            Arrays.fill(keyParameter!!.key, 0.toByte())
+            keyParameter = null
+            values.clear()
+            lockListeners.toList()
+        }
+        listeners.forEach { it() }
+    }
+
+    /**
+     * @return true if the session is unlocked and [keyParameter] is either null or the session key
+     */
+    @Synchronized
+    fun matches(keyParameter: KeyParameter?): Boolean {
+        checkExpiry()
+        val sessionKey = this.keyParameter ?: return false
+        return keyParameter == null || MessageDigest.isEqual(sessionKey.key, keyParameter.key)
+    }
+
+    /**
+     * Returns the value stored under [name], calling [create] with the session key to derive it
+     * the first time.  Each call resets the idle timeout.
+     *
+     * @return the value or null if the session is locked
+     */
+    @Synchronized
+    fun <T : Any> getOrPut(name: String, create: (KeyParameter) -> T): T? {
+        checkExpiry()
+        val sessionKey = keyParameter ?: return null
+        lastUsed = clock()
+        @Suppress("UNCHECKED_CAST")
+        return values.getOrPut(name) { create(sessionKey) } as T
+    }
+
+    /**
+     * [listener] is called after the session is locked, on the thread that locked it
+     */
+    @Synchronized
+    fun addLockListener(listener: () -> Unit) {
+        lockListeners.add(listener)
+    }
+
+    @Synchronized
+    fun removeLockListener(listener: () -> Unit) {
+        lockListeners.remove(listener)
+    }
+
+    private fun checkExpiry() {
+        if (keyParameter != null && clock() - lastUsed >= idleTimeoutMillis) {
+            lock()
+        }
+    }
+
+    private fun scheduleExpiry(delayMillis: Long) {
+        expiry?.cancel(false)
+        expiry = scheduler?.invoke(delayMillis) {
+            synchronized(this) {
+                checkExpiry()
+                // the session was used since this was scheduled
+                if (keyParameter != null) {
+                    scheduleExpiry(lastUsed + idleTimeoutMillis - clock())
+                }
+            }
+        }
+    }
+}
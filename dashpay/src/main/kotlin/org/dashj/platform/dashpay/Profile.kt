@@ -11,10 +11,8 @@ class Profile(document: Document) : AbstractDocument(document) {
         get() = getFieldString("publicMessage")
     val avatarUrl: String?
         get() = getFieldString("avatarUrl")
-    val avatarHash: ByteArray?
-        get() = getFieldByteArray("avatarHash")
-    val avatarFingerprint: ByteArray?
-        get() = getFieldByteArray("avatarFingerprint")
+    val avatarHash: ByteArray? by field { getFieldByteArray("avatarHash") }
+    val avatarFingerprint: ByteArray? by field { getFieldByteArray("avatarFingerprint") }
 
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.dashpay
+
+import java.util.concurrent.Callable
+import org.dashj.platform.dpp.document.Document
+import org.dashj.platform.dpp.identifier.Identifier
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * An in memory store of profiles by owner id that is refreshed with only the profiles that
+ * have changed
+ *
+ * Each owner has a sync mark: the $updatedAt of their stored profile, or for an owner without a
+ * profile, the time when that was last confirmed.  [refresh] requests the profiles of owners that
+ * are not in the store in full and the others with "$updatedAt >" the oldest of their marks less
+ * [overlapMillis], so that only profiles that have changed since the last refresh are downloaded.
+ * The overlap is needed because $updatedAt is set by the client that updates the profile, so an
+ * update may arrive after profiles with a newer $updatedAt have been stored.
+ *
+ * When set as [Profiles.store], [Profiles.get] returns profiles that were fetched within
+ * [maxAgeMillis] without a request and [Profiles.create] and [Profiles.replace] update the store.
+ *
+ * @param profiles used to fetch the profiles
+ * @param maxAgeMillis how long a fetched profile is served by [get] before it is fetched again
+ * @param overlapMillis how far before the sync marks to query again
+ * @param clock the current time in milliseconds
+ */
+class ProfileStore internal constructor(
+    val profiles: Profiles,
+    val maxAgeMillis: Long,
+    val overlapMillis: Long,
+    private val clock: () -> Long,
+    private val getList: (List<Identifier>, Long) -> List<Document>
+) {
+    @JvmOverloads
+    constructor(
+        profiles: Profiles,
+        maxAgeMillis: Long = DEFAULT_MAX_AGE_MILLIS,
+        overlapMillis: Long = DEFAULT_OVERLAP,
+        clock: () -> Long = { System.currentTimeMillis() }
+    ) : this(profiles, maxAgeMillis, overlapMillis, clock, { userIds, since -> profiles.getList(userIds, since) })
+
+    companion object {
+        const val DEFAULT_MAX_AGE_MILLIS = 5 * 60 * 1000L
+        const val DEFAULT_OVERLAP = ContactSyncEngine.DEFAULT_OVERLAP
+        private val log: Logger = LoggerFactory.getLogger(ProfileStore::class.java)
+    }
+
+    /**
+     * @property profile the profile or null if the owner does not have one
+     * @property fetchedAt when the profile was last fetched or confirmed to be unchanged
+     * @property syncMark after which changes to the profile are requested
+     */
+    private class Entry(val profile: Document?, val fetchedAt: Long, val syncMark: Long) {
+        val updatedAt: Long
+            get() = profile?.updatedAt ?: 0L
+    }
+
+    private val entries = hashMapOf<Identifier, Entry>()
+
+    /** the newest $updatedAt of the profiles that have been stored */
+    var latestUpdatedAt = 0L
+        @Synchronized get
+        private set
+
+    val size: Int
+        @Synchronized get() = entries.size
+
+    /**
+     * @return the stored profile of [userId] regardless of when it was fetched
+     */
+    @Synchronized
+    fun getCached(userId: Identifier): Document? = entries[userId]?.profile
+
+    /**
+     * @return the $updatedAt of the stored profile of [userId] or 0
+     */
+    @Synchronized
+    fun getUpdatedAt(userId: Identifier): Long = entries[userId]?.updatedAt ?: 0L
+
+    /**
+     * @return the sync mark of [userId], after which (less [overlapMillis]) changes to the profile
+     * are requested by [refresh]
+     */
+    @Synchronized
+    fun getSyncMark(userId: Identifier): Long = entries[userId]?.syncMark ?: 0L
+
+    @Synchronized
+    fun isFresh(userId: Identifier): Boolean {
+        val entry = entries[userId] ?: return false
+        return clock() - entry.fetchedAt < maxAgeMillis
+    }
+
+    /**
+     * @return the profile of [userId] from the store if it is fresh, otherwise from the network
+     */
+    fun get(userId: Identifier): Document? {
+        synchronized(this) {
+            entries[userId]?.let { entry ->
+                if (clock() - entry.fetchedAt < maxAgeMillis) {
+                    return entry.profile
+                }
+            }
+        }
+        val now = clock()
+        val profile = profiles.fetch(userId)
+        synchronized(this) {
+            store(userId, profile, now)
+            return entries.getValue(userId).profile
+        }
+    }
+
+    /**
+     * Stores a profile that was created or updated by this client
+     */
+    @Synchronized
+    fun put(profile: Document) {
+        store(profile.ownerId, profile, clock())
+    }
+
+    /**
+     * Fetches the profiles of [userIds] that have changed since they were stored
+     *
+     * @return the profiles that are new or have changed
+     */
+    fun refresh(userIds: Collection<Identifier>): List<Document> {
+        val now = clock()
+        val (known, unknown) = synchronized(this) {
+            userIds.distinct().partition { entries.containsKey(it) }
+        }
+        // getList returns profiles where $updatedAt > since
+        val since = if (known.isNotEmpty()) {
+            val oldestMark = synchronized(this) { known.minOf { entries.getValue(it).syncMark } }
+            if (oldestMark == 0L) 0L else maxOf(0L, oldestMark - overlapMillis - 1)
+        } else {
+            0L
+        }
+
+        val (changedKnown, changedUnknown) = profiles.platform.executor.fanOut(
+            Callable { if (known.isNotEmpty()) getList(known, since) else listOf() },
+            Callable { if (unknown.isNotEmpty()) getList(unknown, 0L) else listOf() }
+        )
+
+        val fetched = changedKnown + changedUnknown
+        val changed = arrayListOf<Document>()
+        synchronized(this) {
+            for (profile in fetched) {
+                val previousUpdatedAt = entries[profile.ownerId]?.profile?.updatedAt
+                if (previousUpdatedAt == null || (profile.updatedAt ?: 0L) > previousUpdatedAt) {
+                    changed.add(profile)
+                }
+                latestUpdatedAt = maxOf(latestUpdatedAt, profile.updatedAt ?: 0L)
+            }
+            // owners that were not fetched because they have not changed keep their marks
+            val fetchedProfiles = fetched.associateBy { it.ownerId }
+            for (userId in known + unknown) {
+                store(userId, fetchedProfiles[userId], now)
+            }
+        }
+        log.info("refreshed ${userIds.size} profiles: ${fetched.size} fetched since $since, ${changed.size} changed")
+        return changed
+    }
+
+    @Synchronized
+    fun remove(userId: Identifier) {
+        entries.remove(userId)
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        latestUpdatedAt = 0L
+    }
+
+    // a stored profile is only replaced by a newer version, since an older one may have been
+    // fetched concurrently, and is kept if [profile] is null because it was not fetched again.
+    // The mark of an owner without a profile is when that was confirmed, so that a profile they
+    // create later is requested.
+    private fun store(userId: Identifier, profile: Document?, fetchedAt: Long) {
+        val existing = entries[userId]
+        val keep = existing?.profile != null && (profile == null || existing.updatedAt >= (profile.updatedAt ?: 0L))
+        latestUpdatedAt = maxOf(latestUpdatedAt, profile?.updatedAt ?: 0L)
+        val stored = if (keep) existing!!.profile else profile
+        val syncMark = stored?.updatedAt ?: fetchedAt
+        entries[userId] = Entry(stored, fetchedAt, syncMark)
+    }
+}
@@ -16,15 +16,25 @@ import org.dashj.platform.dpp.document.DocumentCreateTransition
 import org.dashj.platform.dpp.document.DocumentsBatchTransition
 import org.dashj.platform.dpp.identifier.Identifier
 import org.dashj.platform.dpp.identity.Identity
-import org.dashj.platform.sdk.platform.Documents
 import org.dashj.platform.sdk.platform.Platform
+import org.dashj.platform.sdk.platform.QueryTemplate
 
 class Profiles(
     val platform: Platform
 ) {
+    /** when set, [get] is served from the store while the profile is fresh */
+    var store: ProfileStore? = null
 
     companion object {
         const val DOCUMENT: String = "dashpay.profile"
+
+        private val OWNER_QUERY = QueryTemplate.builder()
+            .where("\$ownerId", "==", QueryTemplate.PARAM)
+            .build()
+        private val OWNER_UPDATED_AT_QUERY = QueryTemplate.builder()
+            .where("\$ownerId", "==", QueryTemplate.PARAM)
+            .where("\$updatedAt", "==", QueryTemplate.PARAM)
+            .build()
     }
 
     fun create(
@@ -46,7 +56,9 @@ class Profiles(
 
         val transition = signAndBroadcast(transitionMap, identity, id, signingKey)
 
-        return platform.dpp.document.createFromObject(transition.transitions[0].toObject())
+        val document = platform.dpp.document.createFromObject(transition.transitions[0].toObject())
+        store?.put(document)
+        return document
     }
 
     fun replace(
@@ -59,7 +71,9 @@ class Profiles(
         id: Int,
         signingKey: ECKey
     ): Document {
-        val currentProfile = get(identity.id)
+        // fetched rather than taken from the store, which may have an old $revision if the
+        // profile was updated by another device
+        val currentProfile = fetch(identity.id)
 
         val profileData = hashMapOf<String, Any?>()
         profileData.putAll(currentProfile!!.toJSON())
@@ -78,7 +92,9 @@ class Profiles(
 
         val transition = signAndBroadcast(transitionMap, identity, id, signingKey)
 
-        return platform.dpp.document.createFromObject(transition.transitions[0].toObject())
+        val document = platform.dpp.document.createFromObject(transition.transitions[0].toObject())
+        store?.put(document)
+        return document
     }
 
     private fun signAndBroadcast(
@@ -127,15 +143,23 @@ class Profiles(
         return get(Identifier.from(userId))
     }
 
+    /**
+     * @param updatedAt the $updatedAt of the profile to get, or -1 for the current profile,
+     * which is returned from [store] if it is fresh
+     */
     fun get(userId: Identifier, updatedAt: Long = -1): Document? {
-        val queryBuilder = DocumentQuery.Builder()
-            .where("\$ownerId", "==", userId)
-
-        if (updatedAt != -1L) {
-            queryBuilder.where(listOf("\$updatedAt", "==", updatedAt))
+        if (updatedAt == -1L) {
+            store?.let { return it.get(userId) }
         }
+        return fetch(userId, updatedAt)
+    }
 
-        val query = queryBuilder.build()
+    internal fun fetch(userId: Identifier, updatedAt: Long = -1): Document? {
+        val query = if (updatedAt != -1L) {
+            OWNER_UPDATED_AT_QUERY.bind(userId, updatedAt)
+        } else {
+            OWNER_QUERY.bind(userId)
+        }
         try {
             val documents = platform.documents.get(DOCUMENT, query)
             return if (documents.isNotEmpty()) documents[0] else null
@@ -154,41 +178,13 @@ class Profiles(
         userIds: List<Identifier>,
         timestamp: Long = 0L
     ): List<Document> {
-        var startAt = 0 // this parameter is not used by a getDocuments query, so 0 is good
-        val documents = ArrayList<Document>()
-
-        while (startAt < userIds.size) {
-            val subsetSize = if (startAt + Documents.DOCUMENT_LIMIT > userIds.size) {
-                userIds.size - startAt
-            } else {
-                Documents.DOCUMENT_LIMIT
-            }
-            val userIdSubSet = userIds.subList(startAt, startAt + subsetSize)
-            val documentSubset = getListHelper(userIdSubSet, timestamp)
-            documents.addAll(documentSubset)
-            startAt += subsetSize
-        }
-
-        return documents
-    }
-
-    /**
-     * gets a list of profiles using the identities in userIds (max 100)
-     *
-     * This query never has more than 100 results, since userIds are primary keys
-     */
-    private fun getListHelper(
-        userIds: List<Identifier>,
-        timestamp: Long = 0L
-    ): List<Document> {
-        val documentQuery = DocumentQuery.builder()
-            .whereIn("\$ownerId", userIds)
-            .where("\$updatedAt", ">", timestamp)
-            .orderBy("\$ownerId", true)
-            .orderBy("\$updatedAt", true)
-            .build()
-
-        return platform.documents.get(DOCUMENT, documentQuery)
+        return platform.documents.getByIn(
+            DOCUMENT,
+            "\$ownerId",
+            userIds,
+            extraWhere = listOf(listOf("\$updatedAt", ">", timestamp)),
+            orderBy = listOf(Pair("\$ownerId", true), Pair("\$updatedAt", true))
+        )
     }
 
     suspend fun watchProfile(
@@ -205,11 +201,7 @@ class Profiles(
             return result[0]
         } else {
             if (retryCount > 0) {
-                val nextDelay = delayMillis * when (retryDelayType) {
-                    RetryDelayType.SLOW20 -> 5 / 4
-                    RetryDelayType.SLOW50 -> 3 / 2
-                    else -> 1
-                }
+                val nextDelay = retryDelayType.nextDelay(delayMillis)
                 kotlinx.coroutines.delay(nextDelay)
                 return watchProfile(userId, retryCount - 1, nextDelay, retryDelayType)
             }
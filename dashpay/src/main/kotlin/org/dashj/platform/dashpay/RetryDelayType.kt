@@ -7,8 +7,17 @@
 
 package org.dashj.platform.dashpay
 
-enum class RetryDelayType {
-    LINEAR,
-    SLOW20,
-    SLOW50
+/**
+ * How the delay between attempts of a watch grows
+ *
+ * @property multiplier the factor applied to the delay after each attempt
+ */
+enum class RetryDelayType(val multiplier: Double) {
+    LINEAR(1.0),
+    SLOW20(1.25),
+    SLOW50(1.5);
+
+    fun nextDelay(delayMillis: Long): Long {
+        return (delayMillis * multiplier).toLong()
+    }
 }
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.dashpay
+
+import java.security.MessageDigest
+import java.util.Arrays
+import org.bitcoinj.core.Sha256Hash
+import org.bouncycastle.crypto.params.KeyParameter
+import org.dashj.platform.dpp.identifier.Identifier
+
+/**
+ * A memory only cache of the ECDH shared keys that encrypt and decrypt the extended public keys
+ * of contact requests.  Deriving a shared key requires decrypting our identity key and an elliptic
+ * curve multiplication, which this avoids for repeated operations with the same contact.
+ *
+ * The keys are never written to disk.  [clear] overwrites them and should be called when the
+ * wallet is locked.  A key is also not returned once it is older than [maxAgeMillis], so that
+ * it is derived again, which requires the wallet to be unlocked.
+ *
+ * Each key is stored with a SHA-256 digest of the wallet encryption key that was used to derive
+ * it, if any, and is only returned for the same encryption key.  Comparing the digests costs
+ * little compared to checking the encryption key against the wallet.
+ *
+ * @param maxEntries the most keys to keep; the least recently used key is removed first
+ * @param maxAgeMillis how long a key is kept after it was derived
+ * @param clock the current time in milliseconds
+ */
+class SharedKeyCache(
+    val maxEntries: Int = DEFAULT_MAX_ENTRIES,
+    val maxAgeMillis: Long = DEFAULT_MAX_AGE_MILLIS,
+    private val clock: () -> Long = { System.currentTimeMillis() }
+) {
+    companion object {
+        const val DEFAULT_MAX_ENTRIES = 256
+        const val DEFAULT_MAX_AGE_MILLIS = KeySession.DEFAULT_IDLE_TIMEOUT_MILLIS
+    }
+
+    data class Key(val ourKeyIndex: Int, val contactId: Identifier, val contactKeyIndex: Int)
+
+    private class Entry(val sharedKey: KeyParameter, val createdAt: Long, val aesKeyDigest: ByteArray?)
+
+    private fun digest(aesKey: KeyParameter?): ByteArray? = aesKey?.let { Sha256Hash.hash(it.key) }
+
+    private val keys = object : LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        // evicted keys are not overwritten, since they may still be in use
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, Entry>): Boolean {
+            return size > maxEntries
+        }
+    }
+
+    val size: Int
+        @Synchronized get() = keys.size
+
+    /**
+     * @return the key if it was cached with [aesKey], the wallet encryption key
+     */
+    @Synchronized
+    @JvmOverloads
+    fun get(key: Key, aesKey: KeyParameter? = null): KeyParameter? {
+        val entry = keys[key] ?: return null
+        if (clock() - entry.createdAt >= maxAgeMillis) {
+            // expired keys are not overwritten either, since they may still be in use
+            keys.remove(key)
+            return null
+        }
+        // the digests are compared in constant time
+        return if (MessageDigest.isEqual(entry.aesKeyDigest, digest(aesKey))) entry.sharedKey else null
+    }
+
+    /**
+     * @param aesKey the wallet encryption key that was used to derive [sharedKey], if any
+     */
+    @Synchronized
+    @JvmOverloads
+    fun put(key: Key, sharedKey: KeyParameter, aesKey: KeyParameter? = null) {
+        keys[key] = Entry(sharedKey, clock(), digest(aesKey))
+    }
+
+    fun getOrDerive(key: Key, derive: () -> KeyParameter): KeyParameter {
+        return getOrDerive(key, null, derive)
+    }
+
+    /**
+     * @return the key cached with [aesKey] or the result of [derive], which is then cached
+     */
+    fun getOrDerive(key: Key, aesKey: KeyParameter?, derive: () -> KeyParameter): KeyParameter {
+        get(key, aesKey)?.let { return it }
+        val sharedKey = derive()
+        put(key, sharedKey, aesKey)
+        return sharedKey
+    }
+
+    @Synchronized
+    fun clear() {
+        keys.values.forEach { wipe(it.sharedKey) }
+        keys.clear()
+    }
+
+    private fun wipe(sharedKey: KeyParameter) {
+        Arrays.fill(sharedKey.key, 0.toByte())
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.dashpay
+
+import java.io.Closeable
+import java.lang.ref.WeakReference
+import java.util.WeakHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import org.bitcoinj.core.Sha256Hash
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dpp.document.Document
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.sdk.platform.Names
+import org.dashj.platform.sdk.platform.Platform
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * Polls Platform until documents or identities appear, such as after they are broadcast
+ *
+ * All watches share a single scheduler thread that only keeps time; the queries run on
+ * [executor].  The delay between attempts grows according to [RetryDelayType] with
+ * [jitter] applied so that many watches started at once do not query at the same time.
+ *
+ * Watches for contact requests, usernames and preorders are merged into "in" queries by
+ * [contactRequestWatcher], [usernameWatcher] and [preorderWatcher].
+ *
+ * The engine only holds [platform] weakly, so that the engine shared by [forPlatform] does not
+ * keep its platform from being collected, and the scheduler thread stops when nothing has been
+ * scheduled for [SCHEDULER_KEEP_ALIVE_SECONDS].
+ *
+ * @param executor runs the queries, [org.dashj.platform.sdk.platform.PlatformExecutor] by default
+ * @param jitter the fraction by which each delay is randomly increased or decreased
+ */
+class WatchEngine(
+    platform: Platform,
+    val executor: Executor = platform.executor.executorService,
+    val jitter: Double = DEFAULT_JITTER
+) : Closeable {
+
+    companion object {
+        const val DEFAULT_JITTER = 0.2
+        const val SCHEDULER_KEEP_ALIVE_SECONDS = 60L
+        private val log: Logger = LoggerFactory.getLogger(WatchEngine::class.java)
+        private val engines = WeakHashMap<Platform, WatchEngine>()
+
+        /**
+         * @return the engine shared by all watches of [platform]
+         */
+        @JvmStatic
+        @Synchronized
+        fun forPlatform(platform: Platform): WatchEngine {
+            return engines.getOrPut(platform) { WatchEngine(platform) }
+        }
+    }
+
+    private val platformReference = WeakReference(platform)
+
+    val platform: Platform
+        get() = platformReference.get() ?: throw IllegalStateException("the platform of this watch engine was collected")
+
+    private val scheduler = ScheduledThreadPoolExecutor(1) { runnable ->
+        Thread(runnable, "watch-engine").apply { isDaemon = true }
+    }.apply {
+        setKeepAliveTime(SCHEDULER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS)
+        allowCoreThreadTimeOut(true)
+    }
+
+    fun withJitter(delayMillis: Long): Long {
+        if (jitter <= 0.0 || delayMillis <= 0) {
+            return delayMillis
+        }
+        val factor = 1.0 + ThreadLocalRandom.current().nextDouble(-jitter, jitter)
+        return (delayMillis * factor).toLong()
+    }
+
+    /**
+     * Runs [task] on [executor] after [delayMillis] without jitter
+     */
+    fun schedule(delayMillis: Long, task: () -> Unit): ScheduledFuture<*> {
+        return scheduler.schedule(
+            {
+                executor.execute {
+                    try {
+                        task()
+                    } catch (e: Exception) {
+                        log.warn("watch task failed: $e", e)
+                    }
+                }
+            },
+            delayMillis,
+            TimeUnit.MILLISECONDS
+        )
+    }
+
+    private fun schedule(delayMillis: Long, handle: WatchHandle, task: () -> Unit) {
+        if (!handle.isCancelled) {
+            handle.setFuture(schedule(withJitter(delayMillis)) { if (!handle.isCancelled) task() })
+        }
+    }
+
+    /**
+     * Calls [poll] until it returns a value or until it has been retried [retryCount] times
+     *
+     * The first attempt is made immediately and an exception thrown by [poll] counts as an
+     * attempt that did not find anything.
+     *
+     * @param delayMillis the delay before the first retry
+     * @param onComplete called with the value returned by [poll]
+     * @param onTimeout called when no value was found after all retries
+     */
+    fun <T> watch(
+        retryCount: Int,
+        delayMillis: Long,
+        retryDelayType: RetryDelayType,
+        poll: () -> T?,
+        onComplete: (T) -> Unit,
+        onTimeout: () -> Unit
+    ): WatchHandle {
+        val handle = WatchHandle()
+
+        fun attempt(retriesLeft: Int, delay: Long) {
+            val result = try {
+                poll()
+            } catch (e: Exception) {
+                log.info("watch query failed: $e")
+                null
+            }
+            when {
+                handle.isCancelled -> return
+                result != null -> {
+                    handle.finish()
+                    onComplete(result)
+                }
+                retriesLeft > 0 -> schedule(delay, handle) { attempt(retriesLeft - 1, retryDelayType.nextDelay(delay)) }
+                else -> {
+                    handle.finish()
+                    onTimeout()
+                }
+            }
+        }
+
+        schedule(0, handle) { attempt(retryCount, delayMillis) }
+        return handle
+    }
+
+    /** watches for contact requests by (fromUserId, toUserId) */
+    val contactRequestWatcher: BatchWatcher<Pair<Identifier, Identifier>, Document> by lazy {
+        BatchWatcher<Pair<Identifier, Identifier>, Document>(this) { keys ->
+            val results = hashMapOf<Pair<Identifier, Identifier>, Document>()
+            // the contactRequest index on ($ownerId, toUserId) allows one query per sender
+            keys.groupBy({ it.first }, { it.second }).forEach { (fromUserId, toUserIds) ->
+                val query = DocumentQuery.Builder()
+                    .where("\$ownerId", "==", fromUserId)
+                    .whereIn("toUserId", toUserIds)
+                    .orderBy("toUserId")
+                    .build()
+                platform.documents.get(ContactRequests.CONTACTREQUEST_DOCUMENT, query).forEach {
+                    results[Pair(it.ownerId, ContactRequest(it).toUserId)] = it
+                }
+            }
+            results
+        }
+    }
+
+    /** watches for domain documents by normalized label under [Names.DEFAULT_PARENT_DOMAIN] */
+    val usernameWatcher: BatchWatcher<String, Document> by lazy {
+        BatchWatcher<String, Document>(this) { labels ->
+            val query = DocumentQuery.Builder()
+                .where("normalizedParentDomainName", "==", Names.DEFAULT_PARENT_DOMAIN)
+                .where(listOf("normalizedLabel", "in", labels))
+                .orderBy("normalizedParentDomainName")
+                .orderBy("normalizedLabel")
+                .build()
+            platform.documents.get(Names.DPNS_DOMAIN_DOCUMENT, query).associateBy { it.data["normalizedLabel"] as String }
+        }
+    }
+
+    /** watches for preorder documents by salted domain hash */
+    val preorderWatcher: BatchWatcher<Sha256Hash, Document> by lazy {
+        BatchWatcher<Sha256Hash, Document>(this) { hashes ->
+            val query = DocumentQuery.Builder()
+                .where(listOf("saltedDomainHash", "in", hashes.map { it.bytes }))
+                .orderBy("saltedDomainHash")
+                .build()
+            platform.documents.get(Names.DPNS_PREORDER_DOCUMENT, query).associateBy {
+                Sha256Hash.wrap(it.data["saltedDomainHash"] as ByteArray)
+            }
+        }
+    }
+
+    override fun close() {
+        scheduler.shutdownNow()
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.dashpay
+
+import java.util.concurrent.Future
+
+/**
+ * Controls a watch that was started with [WatchEngine] or [BatchWatcher]
+ *
+ * After [cancel] is called, no further queries are made and no callbacks are invoked,
+ * except for a callback that is already running.
+ */
+class WatchHandle {
+    @Volatile
+    var isCancelled = false
+        private set
+
+    /** true when the watch has completed or timed out */
+    @Volatile
+    var isDone = false
+        private set
+
+    private var future: Future<*>? = null
+    internal var onCancel: (() -> Unit)? = null
+
+    @Synchronized
+    internal fun setFuture(future: Future<*>) {
+        this.future = future
+        if (isCancelled) {
+            future.cancel(false)
+        }
+    }
+
+    internal fun finish() {
+        isDone = true
+    }
+
+    /**
+     * @return false if the watch had already completed or timed out
+     */
+    fun cancel(): Boolean {
+        synchronized(this) {
+            if (isDone || isCancelled) {
+                return false
+            }
+            isCancelled = true
+            future?.cancel(false)
+        }
+        onCancel?.invoke()
+        return true
+    }
+}
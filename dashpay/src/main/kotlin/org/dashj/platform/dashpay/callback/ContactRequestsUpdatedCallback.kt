@@ -0,0 +1,17 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.dashpay.callback
+
+import org.dashj.platform.dashpay.ContactRequest
+
+interface ContactRequestsUpdatedCallback {
+    /**
+     * Called by [org.dashj.platform.dashpay.ContactSyncEngine.sync] when there are new or changed
+     * contact requests
+     */
+    fun onContactRequestsUpdated(sent: List<ContactRequest>, received: List<ContactRequest>)
+}
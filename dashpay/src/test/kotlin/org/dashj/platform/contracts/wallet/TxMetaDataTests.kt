@@ -20,6 +20,7 @@ import org.dashj.platform.dpp.util.Converters
 import org.dashj.platform.dpp.util.Entropy
 import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.assertThrows
@@ -115,6 +116,35 @@ class TxMetaDataTests : PlatformNetwork() {
         }
     }
 
+    @Test
+    fun compressionTest() {
+        val manyItems = List(100) {
+            TxMetadataItem(
+                Entropy.generateRandomBytes(32),
+                System.currentTimeMillis() / 1000,
+                "Bob's Burger Joint",
+                52.23,
+                "USD",
+                "expense",
+                "DashDirect"
+            )
+        }
+
+        val uncompressed = TxMetadataDocument.encode(manyItems)
+        val compressed = TxMetadataDocument.encode(manyItems, TxMetadataDocument.VERSION_DEFLATE_CBOR)
+        assertEquals(TxMetadataDocument.VERSION_DEFLATE_CBOR, compressed[0].toInt())
+        assertTrue(compressed.size < uncompressed.size / 2)
+
+        assertListEquals(manyItems, TxMetadataDocument.decode(compressed))
+        // documents without a version byte are still supported
+        assertListEquals(manyItems, TxMetadataDocument.decode(uncompressed))
+        assertArrayEquals(Cbor.encode(manyItems.map { it.toObject() }), uncompressed)
+
+        assertThrows<IllegalArgumentException> {
+            TxMetadataDocument.decode(byteArrayOf(0x7f) + compressed.copyOfRange(1, compressed.size))
+        }
+    }
+
     @Test
     fun emptyListTest() {
         val blockchainIdentity = BlockchainIdentity(platform, 0, wallet, authenticationGroupExtension)
@@ -1,9 +1,18 @@
 package org.dashj.platform.dashpay
 
+import java.util.concurrent.Callable
 import kotlin.random.Random
+import org.bitcoinj.crypto.DeterministicKey
+import org.bitcoinj.crypto.HDKeyDerivation
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dpp.util.Entropy
+import org.dashj.platform.sdk.platform.DomainDocument
+import org.dashj.platform.sdk.platform.Names
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
 
 class BlockchainIdentityTest : PlatformNetwork() {
 
@@ -29,4 +38,63 @@ class BlockchainIdentityTest : PlatformNetwork() {
         assertNotEquals(currentProfile, retrievedProfile)
         assertEquals(updatedProfile, Profile(retrievedProfile))
     }
+
+    @Test
+    fun sharedKeyCacheAfterEncryptionTest() {
+        blockchainIdentity.recoverIdentity(authenticationGroupExtension.identityKeyChain.getKey(0, true).pubKeyHash)
+        val contactIdentity = blockchainIdentity.identity!!
+        val xpub = blockchainIdentity.wallet!!.watchingKey.serializeContactPub()
+        val expectedXpub = DeterministicKey.deserializeContactPub(platform.params, xpub).serializePubB58(platform.params)
+
+        // the shared key is cached while the wallet is not encrypted
+        blockchainIdentity.encryptExtendedPublicKey(xpub, contactIdentity, 0, null)
+        assertEquals(1, blockchainIdentity.sharedKeyCache.size)
+
+        val wallet = blockchainIdentity.wallet!!
+        wallet.encrypt("password")
+        val aesKey = wallet.keyCrypter!!.deriveKey("password")
+
+        // the cached key is not used without the wallet key
+        assertThrows<Exception> { blockchainIdentity.encryptExtendedPublicKey(xpub, contactIdentity, 0, null) }
+
+        // it is used with the wallet key or while the identity is unlocked
+        val (encrypted, _) = blockchainIdentity.encryptExtendedPublicKey(xpub, contactIdentity, 0, aesKey)
+        blockchainIdentity.unlock(aesKey)
+        val decrypted = blockchainIdentity.decryptExtendedPublicKey(encrypted, contactIdentity, 0, 0, null)
+        assertEquals(expectedXpub, decrypted)
+        blockchainIdentity.lock()
+        assertEquals(0, blockchainIdentity.sharedKeyCache.size)
+    }
+
+    @Test
+    fun importContactRequestsTest() {
+        blockchainIdentity.recoverIdentity(authenticationGroupExtension.identityKeyChain.getKey(0, true).pubKeyHash)
+        val domains = platform.documents.get(Names.DPNS_DOMAIN_DOCUMENT, DocumentQuery.builder().limit(20).build())
+        val contactIds = domains.mapNotNull { DomainDocument(it).dashUniqueIdentityId }
+            .filter { it != blockchainIdentity.uniqueIdentifier }
+        val contactIdentities = platform.identities.getList(contactIds).values.toList()
+
+        // requests received from each contact, encrypted with the shared key that the sender derives
+        val imports = contactIdentities.map { contactIdentity ->
+            val xpub = HDKeyDerivation.createMasterPrivateKey(Entropy.generate()).serializeContactPub()
+            val (encryptedXpub, _) = blockchainIdentity.encryptExtendedPublicKey(xpub, contactIdentity, 0, null)
+            val contactRequest = ContactRequest.builder(platform)
+                .from(contactIdentity.id)
+                .to(blockchainIdentity.uniqueIdentifier)
+                .encryptedPubKey(encryptedXpub, 0, BlockchainIdentity.KeyIndexPurpose.AUTHENTICATION.ordinal)
+                .accountReference(0)
+                .coreHeightCreatedAt(1)
+                .build()
+            ContactImport(contactIdentity, contactRequest)
+        }
+
+        // the keychains are prepared in parallel and two concurrent imports add each one once
+        val (first, second) = platform.executor.fanOut(
+            Callable { blockchainIdentity.importContactRequests(imports, null) },
+            Callable { blockchainIdentity.importContactRequests(imports, null) }
+        )
+        assertTrue(first.failed.isEmpty() && second.failed.isEmpty())
+        assertEquals(imports.size, first.added.size + second.added.size)
+        assertTrue(imports.all { blockchainIdentity.hasContactKeyChain(it.contactRequest) })
+    }
 }
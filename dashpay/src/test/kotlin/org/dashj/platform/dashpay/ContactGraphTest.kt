@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package org.dashj.platform.dashpay
+
+import org.dashj.platform.dashpay.DashPayFixtures.changed
+import org.dashj.platform.dashpay.DashPayFixtures.contactRequest
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.util.Entropy
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class ContactGraphTest {
+
+    @Test
+    fun addTest() {
+        val alice = Identifier.from(Entropy.generate())
+        val bob = Identifier.from(Entropy.generate())
+        val carol = Identifier.from(Entropy.generate())
+        val dave = Identifier.from(Entropy.generate())
+        val graph = ContactGraph()
+
+        val aliceToBob = contactRequest(alice, bob)
+        assertTrue(graph.add(aliceToBob))
+        assertFalse(graph.isEstablished(alice, bob))
+        assertEquals(listOf(aliceToBob), graph.getPendingOutgoing(alice))
+        assertEquals(listOf(aliceToBob), graph.getPendingIncoming(bob))
+
+        val bobToAlice = contactRequest(bob, alice)
+        graph.add(bobToAlice)
+        assertTrue(graph.isEstablished(alice, bob))
+        assertTrue(graph.isEstablished(bob, alice))
+        assertTrue(graph.getPendingOutgoing(alice).isEmpty())
+        assertTrue(graph.getPendingIncoming(bob).isEmpty())
+        assertSame(bobToAlice, graph.get(bob, alice))
+        assertEquals(1, graph.establishedContactCount)
+        assertEquals(2, graph.getEstablishedPairs().size)
+
+        // carol is a contact of both alice and bob, dave only of alice
+        graph.addAll(
+            listOf(
+                contactRequest(alice, carol), contactRequest(carol, alice),
+                contactRequest(bob, carol), contactRequest(carol, bob),
+                contactRequest(alice, dave), contactRequest(dave, alice)
+            )
+        )
+        assertEquals(setOf(bob, carol, dave), graph.getEstablishedContacts(alice))
+        assertEquals(1, graph.getMutualContactCount(alice, bob))
+        assertEquals(2, graph.getMutualContactCount(bob, carol))
+        assertEquals(0, graph.getMutualContactCount(bob, dave))
+        assertEquals(4, graph.establishedContactCount)
+        assertEquals(setOf(alice, bob, carol, dave), graph.getUsers())
+
+        // a later request between the same users does not replace the first
+        assertFalse(graph.add(contactRequest(alice, bob)))
+        assertSame(aliceToBob, graph.get(alice, bob))
+        assertEquals(8, graph.size)
+
+        // a changed copy of the same request replaces it, but an older copy does not
+        val changed = changed(aliceToBob, (aliceToBob.createdAt ?: 0L) + 1000)
+        assertTrue(graph.add(changed))
+        assertSame(changed, graph.get(alice, bob))
+        assertFalse(graph.add(aliceToBob))
+        assertSame(changed, graph.get(alice, bob))
+        assertTrue(graph.isEstablished(alice, bob))
+        assertEquals(8, graph.size)
+        assertEquals(4, graph.establishedContactCount)
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package org.dashj.platform.dashpay
+
+import org.dashj.platform.dashpay.DashPayFixtures.contactRequest
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.util.Entropy
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class ContactSuggestionsTest {
+
+    private fun contact(a: Identifier, b: Identifier) = listOf(contactRequest(a, b), contactRequest(b, a))
+
+    @Test
+    fun suggestTest() {
+        val alice = Identifier.from(Entropy.generate())
+        val bob = Identifier.from(Entropy.generate())
+        val carol = Identifier.from(Entropy.generate())
+        val dave = Identifier.from(Entropy.generate())
+        val eve = Identifier.from(Entropy.generate())
+        val frank = Identifier.from(Entropy.generate())
+
+        // alice knows bob and carol; dave knows both of them, eve only bob
+        // frank knows bob and carol, but alice has already sent frank a request
+        val requests = contact(alice, bob) + contact(alice, carol) +
+            contact(dave, bob) + contact(dave, carol) +
+            contact(eve, bob) +
+            contact(frank, bob) + contact(frank, carol) + contactRequest(alice, frank)
+        val suggestions = ContactSuggestions.fromContactRequests(requests)
+
+        assertEquals(6, suggestions.identityCount)
+        assertEquals(7, suggestions.contactCount)
+        assertEquals(setOf(bob, carol), suggestions.getContacts(alice).toSet())
+        assertEquals(setOf(bob, carol), suggestions.getMutualContacts(alice, dave).toSet())
+
+        assertEquals(
+            listOf(ContactSuggestions.Suggestion(dave, 2), ContactSuggestions.Suggestion(eve, 1)),
+            suggestions.suggest(alice)
+        )
+        assertTrue(suggestions.suggest(alice, excludeRequested = false).contains(ContactSuggestions.Suggestion(frank, 2)))
+        assertEquals(1, suggestions.suggest(alice, limit = 1).size)
+        assertTrue(suggestions.suggest(Identifier.from(Entropy.generate())).isEmpty())
+    }
+}
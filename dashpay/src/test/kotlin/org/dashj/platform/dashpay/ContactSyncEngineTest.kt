@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package org.dashj.platform.dashpay
+
+import java.io.File
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class ContactSyncEngineTest : PlatformNetwork() {
+
+    @Test
+    fun syncTest() {
+        val first = platform.documents.get(ContactRequests.CONTACTREQUEST_DOCUMENT, DocumentQuery.builder().limit(1).build())
+        val userId = first.first().ownerId
+
+        val engine = ContactSyncEngine(platform, userId)
+        val result = engine.sync()
+        assertTrue(result.sent.isNotEmpty())
+        assertEquals(result.sent.size, engine.getContactRequests(ContactSyncEngine.Direction.SENT).size)
+
+        // nothing is reported again
+        assertTrue(engine.sync().isEmpty)
+        assertEquals(result.sent.size, engine.getContactRequests(ContactSyncEngine.Direction.SENT).size)
+
+        val file = File.createTempFile("contacts", ".sync")
+        try {
+            engine.save(file)
+            val loaded = ContactSyncEngine(platform, userId)
+            loaded.load(file)
+            assertEquals(engine.allContactRequests.size, loaded.allContactRequests.size)
+            assertEquals(
+                engine.getCursor(ContactSyncEngine.Direction.SENT).createdAt,
+                loaded.getCursor(ContactSyncEngine.Direction.SENT).createdAt
+            )
+            assertTrue(loaded.sync().isEmpty)
+        } finally {
+            file.delete()
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package org.dashj.platform.dashpay
+
+import java.util.Date
+import org.bitcoinj.params.TestNet3Params
+import org.dashj.platform.dpp.document.Document
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.util.Entropy
+import org.dashj.platform.sdk.platform.Platform
+
+/**
+ * Creates DashPay documents without a network connection, from a local data contract with the
+ * contactRequest and profile document types of the DashPay contract
+ */
+object DashPayFixtures {
+    private const val CONTACT_REQUEST = "contactRequest"
+    private const val PROFILE = "profile"
+    private val platform = Platform(TestNet3Params.get())
+
+    private val byteArray = { size: Int -> hashMapOf<String, Any>("type" to "array", "byteArray" to true, "minItems" to size, "maxItems" to size) }
+    private val integer = { minimum: Int -> hashMapOf<String, Any>("type" to "integer", "minimum" to minimum) }
+    private val string = { maxLength: Int -> hashMapOf<String, Any>("type" to "string", "maxLength" to maxLength) }
+
+    private val dataContract = platform.dpp.dataContract.create(
+        Entropy.generate(),
+        hashMapOf<String, Any?>(
+            CONTACT_REQUEST to hashMapOf(
+                "type" to "object",
+                "properties" to hashMapOf(
+                    "toUserId" to byteArray(32).apply { put("contentMediaType", "application/x.dash.dpp.identifier") },
+                    "encryptedPublicKey" to byteArray(96),
+                    "senderKeyIndex" to integer(0),
+                    "recipientKeyIndex" to integer(0),
+                    "accountReference" to integer(0),
+                    "coreHeightCreatedAt" to integer(1)
+                ),
+                "required" to listOf("\$createdAt", "toUserId", "encryptedPublicKey", "senderKeyIndex", "recipientKeyIndex", "accountReference"),
+                "additionalProperties" to false
+            ),
+            PROFILE to hashMapOf(
+                "type" to "object",
+                "properties" to hashMapOf(
+                    "displayName" to string(25),
+                    "publicMessage" to string(140)
+                ),
+                "required" to listOf("\$createdAt", "\$updatedAt"),
+                "additionalProperties" to false
+            )
+        )
+    )
+
+    @JvmStatic
+    fun contactRequest(from: Identifier, to: Identifier): ContactRequest {
+        val data = hashMapOf<String, Any?>(
+            "toUserId" to to,
+            "encryptedPublicKey" to Entropy.generateRandomBytes(96),
+            "senderKeyIndex" to 0,
+            "recipientKeyIndex" to 0,
+            "accountReference" to 0,
+            "coreHeightCreatedAt" to 1,
+            "\$createdAt" to Date().time
+        )
+        val document = platform.dpp.document.create(dataContract, from, CONTACT_REQUEST, data)
+        return ContactRequest(document)
+    }
+
+    /**
+     * @return a copy of [contactRequest] with the next revision and [updatedAt]
+     */
+    @JvmStatic
+    fun changed(contactRequest: ContactRequest, updatedAt: Long): ContactRequest {
+        val document = Document(contactRequest.toObject(), dataContract).apply {
+            revision = contactRequest.revision + 1
+            this.updatedAt = updatedAt
+        }
+        return ContactRequest(document)
+    }
+
+    @JvmStatic
+    fun profile(ownerId: Identifier, displayName: String, updatedAt: Long): Document {
+        val data = hashMapOf<String, Any?>(
+            "displayName" to displayName,
+            "\$createdAt" to updatedAt,
+            "\$updatedAt" to updatedAt
+        )
+        return platform.dpp.document.create(dataContract, ownerId, PROFILE, data).apply {
+            this.updatedAt = updatedAt
+        }
+    }
+}
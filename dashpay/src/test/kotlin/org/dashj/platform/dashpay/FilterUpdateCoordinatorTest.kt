@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package org.dashj.platform.dashpay
+
+import java.util.concurrent.Delayed
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class FilterUpdateCoordinatorTest {
+
+    /** runs tasks only when the test advances the time */
+    class ManualScheduler {
+        var now = 0L
+        private val tasks = arrayListOf<Task>()
+
+        inner class Task(val runAt: Long, val block: () -> Unit) : ScheduledFuture<Unit> {
+            private var cancelled = false
+            private var done = false
+
+            fun run() {
+                done = true
+                block()
+            }
+
+            override fun cancel(mayInterruptIfRunning: Boolean): Boolean {
+                cancelled = !done
+                return cancelled
+            }
+            override fun isCancelled() = cancelled
+            override fun isDone() = done || cancelled
+            override fun get() = Unit
+            override fun get(timeout: Long, unit: TimeUnit) = Unit
+            override fun getDelay(unit: TimeUnit) = unit.convert(runAt - now, TimeUnit.MILLISECONDS)
+            override fun compareTo(other: Delayed) = getDelay(TimeUnit.MILLISECONDS).compareTo(other.getDelay(TimeUnit.MILLISECONDS))
+        }
+
+        fun schedule(delayMillis: Long, block: () -> Unit): ScheduledFuture<*> {
+            return Task(now + delayMillis, block).also { tasks.add(it) }
+        }
+
+        fun advance(millis: Long) {
+            now += millis
+            val due = tasks.filter { it.runAt <= now && !it.isDone }
+            tasks.removeAll(due)
+            due.forEach { it.run() }
+        }
+    }
+
+    private val scheduler = ManualScheduler()
+    private var recalculations = 0
+    private val coordinator = FilterUpdateCoordinator(
+        { recalculations++ },
+        scheduler::schedule,
+        debounceMillis = 100,
+        maxDelayMillis = 1000,
+        clock = { scheduler.now }
+    )
+
+    @Test
+    fun debounceTest() {
+        for (i in 0 until 5) {
+            coordinator.requestUpdate()
+            scheduler.advance(50)
+        }
+        assertEquals(0, recalculations)
+        assertTrue(coordinator.isPending)
+
+        scheduler.advance(50)
+        assertEquals(1, recalculations)
+        assertFalse(coordinator.isPending)
+
+        // nothing is pending, so nothing else happens
+        scheduler.advance(1000)
+        assertEquals(1, recalculations)
+    }
+
+    @Test
+    fun maxDelayTest() {
+        // a steady stream of requests still results in an update after maxDelayMillis
+        for (i in 0 until 30) {
+            coordinator.requestUpdate()
+            scheduler.advance(50)
+        }
+        assertEquals(1, recalculations)
+        assertEquals(1, coordinator.updateCount)
+    }
+
+    @Test
+    fun batchTest() {
+        val result = coordinator.batch {
+            for (i in 0 until 10) {
+                coordinator.requestUpdate()
+                scheduler.advance(2000)
+            }
+            assertEquals(0, recalculations)
+            "restored"
+        }
+        assertEquals("restored", result)
+
+        scheduler.advance(0)
+        assertEquals(1, recalculations)
+    }
+
+    @Test
+    fun flushTest() {
+        coordinator.flush()
+        assertEquals(0, recalculations)
+
+        coordinator.requestUpdate()
+        coordinator.flush()
+        assertEquals(1, recalculations)
+
+        // the scheduled update was cancelled
+        scheduler.advance(1000)
+        assertEquals(1, recalculations)
+    }
+
+    @Test
+    fun flushBeforeDownloadTest() {
+        // as in DashPayWallet.updateContactRequests, keychains are added in a batch and the filter
+        // is flushed before the block download starts
+        val events = arrayListOf<String>()
+        val walletCoordinator = FilterUpdateCoordinator(
+            { events.add("recalculate") },
+            scheduler::schedule,
+            debounceMillis = 100,
+            maxDelayMillis = 1000,
+            clock = { scheduler.now }
+        )
+        walletCoordinator.batch {
+            for (i in 0 until 3) {
+                walletCoordinator.requestUpdate()
+            }
+        }
+        walletCoordinator.flush()
+        events.add("download")
+
+        assertEquals(listOf("recalculate", "download"), events)
+
+        // the debounced update was cancelled by the flush
+        scheduler.advance(1000)
+        assertEquals(listOf("recalculate", "download"), events)
+    }
+}
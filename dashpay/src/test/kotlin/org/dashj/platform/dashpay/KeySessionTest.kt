@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package org.dashj.platform.dashpay
+
+import org.bouncycastle.crypto.params.KeyParameter
+import org.dashj.platform.dpp.util.Entropy
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class KeySessionTest {
+
+    @Test
+    fun getOrPutTest() {
+        val session = KeySession()
+        assertNull(session.getOrPut("value") { Any() })
+
+        val keyParameter = KeyParameter(Entropy.generate())
+        session.unlock(keyParameter)
+        var derivations = 0
+        val create = { key: KeyParameter ->
+            derivations++
+            key.key.copyOf()
+        }
+
+        val first = session.getOrPut("value", create)
+        val second = session.getOrPut("value", create)
+        assertSame(first, second)
+        assertArrayEquals(keyParameter.key, first)
+        assertEquals(1, derivations)
+
+        assertTrue(session.matches(null))
+        assertTrue(session.matches(KeyParameter(keyParameter.key.copyOf())))
+        assertFalse(session.matches(KeyParameter(Entropy.generate())))
+    }
+
+    @Test
+    fun idleTimeoutTest() {
+        var now = 1000L
+        val session = KeySession(clock = { now })
+        var locks = 0
+        session.addLockListener { locks++ }
+
+        val keyParameter = KeyParameter(Entropy.generate())
+        session.unlock(keyParameter, 100)
+        var sessionKey: KeyParameter? = null
+        session.getOrPut("value") { sessionKey = it; it }
+
+        // using the session resets the idle timeout
+        now += 99
+        assertTrue(session.isUnlocked)
+        session.getOrPut("value") { it }
+        now += 99
+        assertTrue(session.isUnlocked)
+
+        now += 1
+        assertFalse(session.isUnlocked)
+        assertEquals(1, locks)
+        assertNull(session.getOrPut("value") { it })
+
+        // the copy held by the session is overwritten, but not the caller's key
+        assertArrayEquals(ByteArray(keyParameter.key.size), sessionKey!!.key)
+        assertFalse(keyParameter.key.all { it == 0.toByte() })
+    }
+
+    @Test
+    fun lockTest() {
+        val session = KeySession()
+        var locks = 0
+        session.addLockListener { locks++ }
+
+        session.unlock(KeyParameter(Entropy.generate()))
+        session.getOrPut("value") { Any() }
+        session.lock()
+        assertFalse(session.isUnlocked)
+        assertEquals(1, locks)
+
+        // locking again does nothing
+        session.lock()
+        assertEquals(1, locks)
+
+        // unlocking with a different key drops the values derived from the previous key
+        session.unlock(KeyParameter(Entropy.generate()))
+        var derivations = 0
+        session.getOrPut("value") { derivations++ }
+        session.unlock(KeyParameter(Entropy.generate()))
+        session.getOrPut("value") { derivations++ }
+        assertEquals(2, derivations)
+        assertEquals(2, locks)
+    }
+}
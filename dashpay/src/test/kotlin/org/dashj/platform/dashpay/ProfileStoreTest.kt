@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package org.dashj.platform.dashpay
+
+import org.bitcoinj.params.TestNet3Params
+import org.dashj.platform.dashpay.DashPayFixtures.profile
+import org.dashj.platform.dpp.document.Document
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.util.Entropy
+import org.dashj.platform.sdk.platform.Platform
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class ProfileStoreTest {
+    private val alice = Identifier.from(Entropy.generate())
+    private val bob = Identifier.from(Entropy.generate())
+    private val carol = Identifier.from(Entropy.generate())
+
+    /** the profiles on the network */
+    private val network = hashMapOf<Identifier, Document>()
+    private val queries = arrayListOf<Long>()
+    private var now = 1_000_000L
+
+    private val store = ProfileStore(Profiles(Platform(TestNet3Params.get())), 1000, 60_000, { now }) { userIds, since ->
+        queries.add(since)
+        userIds.mapNotNull { network[it] }.filter { (it.updatedAt ?: 0L) > since }
+    }
+
+    private fun displayNames(profiles: List<Document>) = profiles.map { it.data["displayName"] }.toSet()
+
+    @Test
+    fun lateUpdateTest() {
+        network[alice] = profile(alice, "alice", 1_000_000)
+        network[bob] = profile(bob, "bob", 500_000)
+        assertEquals(setOf("alice", "bob"), displayNames(store.refresh(listOf(alice, bob))))
+        assertEquals(1_000_000L, store.getSyncMark(alice))
+        assertEquals(500_000L, store.getSyncMark(bob))
+
+        // bob's update arrives after alice's profile, but its $updatedAt is older
+        network[bob] = profile(bob, "bob 2", 900_000)
+        assertEquals(setOf("bob 2"), displayNames(store.refresh(listOf(alice, bob))))
+        assertEquals(500_000L - 60_000 - 1, queries.last())
+        assertEquals(900_000L, store.getSyncMark(bob))
+
+        // an older version of a profile is not a change and does not replace the stored one
+        network[alice] = profile(alice, "alice 0", 999_000)
+        network[bob] = profile(bob, "bob 3", 990_000)
+        assertEquals(setOf("bob 3"), displayNames(store.refresh(listOf(alice, bob))))
+        assertEquals("alice", store.getCached(alice)!!.data["displayName"])
+
+        assertTrue(store.refresh(listOf(alice, bob)).isEmpty())
+    }
+
+    @Test
+    fun missingProfileTest() {
+        network[alice] = profile(alice, "alice", 100_000)
+        assertEquals(setOf("alice"), displayNames(store.refresh(listOf(alice, carol))))
+        // carol has no profile, so the mark is when that was confirmed
+        assertEquals(now, store.getSyncMark(carol))
+
+        // carol then creates a profile with a clock that is behind, which is within the overlap
+        now += 10_000
+        network[carol] = profile(carol, "carol", now - 30_000)
+        assertEquals(setOf("carol"), displayNames(store.refresh(listOf(carol))))
+        assertEquals(now - 10_000 - 60_000 - 1, queries.last())
+        assertEquals(now - 30_000, store.getSyncMark(carol))
+    }
+}
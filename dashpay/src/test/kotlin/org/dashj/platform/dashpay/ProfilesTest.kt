@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package org.dashj.platform.dashpay
+
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.util.Entropy
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class ProfilesTest : PlatformNetwork() {
+
+    @Test
+    fun storeRefreshTest() {
+        val userIds = platform.documents.get(Profiles.DOCUMENT, DocumentQuery.builder().limit(10).build()).map { it.ownerId }
+        val missingId = Identifier.from(Entropy.generate())
+        var now = 0L
+        val store = ProfileStore(Profiles(platform), maxAgeMillis = 1000, clock = { now })
+
+        // the first refresh fetches every profile, the next only those that changed
+        assertEquals(userIds.size, store.refresh(userIds + missingId).size)
+        assertEquals(userIds.size + 1, store.size)
+        assertTrue(store.refresh(userIds + missingId).isEmpty())
+        assertTrue(store.getUpdatedAt(userIds[0]) > 0)
+        assertNull(store.getCached(missingId))
+
+        // each owner is marked with their own profile
+        assertTrue(userIds.all { store.getSyncMark(it) == store.getUpdatedAt(it) })
+        assertEquals(userIds.maxOf { store.getUpdatedAt(it) }, store.latestUpdatedAt)
+
+        // Profiles.get is served from the store while the profile is fresh
+        val profiles = store.profiles
+        profiles.store = store
+        val cached = store.getCached(userIds[0])
+        assertSame(cached, profiles.get(userIds[0]))
+
+        now += 1000
+        assertFalse(store.isFresh(userIds[0]))
+        // an unchanged profile that is fetched again does not replace the stored one
+        assertSame(cached, profiles.get(userIds[0]))
+        assertTrue(store.isFresh(userIds[0]))
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package org.dashj.platform.dashpay
+
+import org.bouncycastle.crypto.params.KeyParameter
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.util.Entropy
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+
+class SharedKeyCacheTest {
+
+    @Test
+    fun getOrDeriveTest() {
+        val cache = SharedKeyCache()
+        val key = SharedKeyCache.Key(0, Identifier.from(Entropy.generate()), 1)
+        var derivations = 0
+        val derive = {
+            derivations++
+            KeyParameter(Entropy.generate())
+        }
+
+        val first = cache.getOrDerive(key, derive)
+        val second = cache.getOrDerive(key, derive)
+        assertSame(first, second)
+        assertEquals(1, derivations)
+
+        // a different contact key index is a different shared key
+        cache.getOrDerive(key.copy(contactKeyIndex = 2), derive)
+        assertEquals(2, derivations)
+    }
+
+    @Test
+    fun evictionAndClearTest() {
+        val cache = SharedKeyCache(maxEntries = 2)
+        val contactId = Identifier.from(Entropy.generate())
+        val keys = (0 until 3).map { SharedKeyCache.Key(0, contactId, it) }
+        keys.forEach { cache.put(it, KeyParameter(Entropy.generate())) }
+
+        assertEquals(2, cache.size)
+        assertNull(cache.get(keys[0]))
+
+        val sharedKey = cache.get(keys[2])
+        assertNotNull(sharedKey)
+        cache.clear()
+        assertEquals(0, cache.size)
+        assertEquals(0, sharedKey!!.key.count { it != 0.toByte() })
+    }
+
+    @Test
+    fun maxAgeTest() {
+        var now = 1000L
+        val cache = SharedKeyCache(maxAgeMillis = 100, clock = { now })
+        val key = SharedKeyCache.Key(0, Identifier.from(Entropy.generate()), 1)
+        cache.put(key, KeyParameter(Entropy.generate()))
+
+        now += 99
+        assertNotNull(cache.get(key))
+
+        // an expired key must be derived again
+        now += 1
+        assertNull(cache.get(key))
+        assertEquals(0, cache.size)
+    }
+
+    @Test
+    fun aesKeyTest() {
+        val cache = SharedKeyCache()
+        val key = SharedKeyCache.Key(0, Identifier.from(Entropy.generate()), 1)
+        val aesKey = KeyParameter(Entropy.generate())
+        val sharedKey = KeyParameter(Entropy.generate())
+        cache.put(key, sharedKey, aesKey)
+
+        // the key is only returned for the wallet key that it was derived with
+        assertSame(sharedKey, cache.get(key, KeyParameter(aesKey.key.copyOf())))
+        assertNull(cache.get(key, KeyParameter(Entropy.generate())))
+        assertNull(cache.get(key))
+
+        val derived = cache.getOrDerive(key, null) { KeyParameter(Entropy.generate()) }
+        assertSame(derived, cache.get(key))
+        assertNull(cache.get(key, aesKey))
+    }
+}
@@ -0,0 +1,163 @@
+package org.dashj.platform.dashpay
+
+import java.lang.ref.WeakReference
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import org.bitcoinj.params.TestNet3Params
+import org.dashj.platform.sdk.platform.Platform
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class WatchEngineTest {
+
+    private val executor = Executors.newFixedThreadPool(4)
+    private val engine = WatchEngine(Platform(TestNet3Params.get()), executor, 0.0)
+
+    @AfterEach
+    fun afterEach() {
+        engine.close()
+        executor.shutdown()
+    }
+
+    @Test
+    fun retryDelayTypeTest() {
+        assertEquals(1000L, RetryDelayType.LINEAR.nextDelay(1000))
+        assertEquals(1250L, RetryDelayType.SLOW20.nextDelay(1000))
+        assertEquals(1500L, RetryDelayType.SLOW50.nextDelay(1000))
+    }
+
+    @Test
+    fun watchCompletesTest() {
+        val polls = AtomicInteger()
+        val latch = CountDownLatch(1)
+        var result: String? = null
+
+        val handle = engine.watch(
+            5,
+            10,
+            RetryDelayType.SLOW50,
+            poll = { if (polls.incrementAndGet() == 3) "found" else null },
+            onComplete = {
+                result = it
+                latch.countDown()
+            },
+            onTimeout = { }
+        )
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS))
+        assertEquals("found", result)
+        assertEquals(3, polls.get())
+        assertTrue(handle.isDone)
+        assertFalse(handle.cancel())
+    }
+
+    @Test
+    fun watchTimeoutTest() {
+        val polls = AtomicInteger()
+        val latch = CountDownLatch(1)
+
+        engine.watch<String>(
+            2,
+            10,
+            RetryDelayType.LINEAR,
+            poll = {
+                polls.incrementAndGet()
+                throw IllegalStateException("not available")
+            },
+            onComplete = { },
+            onTimeout = { latch.countDown() }
+        )
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS))
+        assertEquals(3, polls.get())
+    }
+
+    @Test
+    fun cancelTest() {
+        val polls = AtomicInteger()
+        val handle = engine.watch<String>(
+            100,
+            50,
+            RetryDelayType.LINEAR,
+            poll = {
+                polls.incrementAndGet()
+                null
+            },
+            onComplete = { },
+            onTimeout = { }
+        )
+        Thread.sleep(120)
+        assertTrue(handle.cancel())
+        val pollsAtCancel = polls.get()
+        Thread.sleep(200)
+        assertEquals(pollsAtCancel, polls.get())
+        assertTrue(handle.isCancelled)
+    }
+
+    @Test
+    fun batchWatcherTest() {
+        val queries = Collections.synchronizedList(arrayListOf<List<Int>>())
+        val available = Collections.synchronizedSet(hashSetOf(1, 2, 3))
+        val watcher = BatchWatcher<Int, String>(engine, batchWindowMillis = 100) { keys ->
+            queries.add(keys)
+            keys.filter { available.contains(it) }.associateWith { it.toString() }
+        }
+
+        val completed = CountDownLatch(2)
+        val timedOut = CountDownLatch(1)
+        var missing = listOf<Int>()
+
+        watcher.watch(listOf(1, 2), 3, 10, RetryDelayType.LINEAR, onComplete = { completed.countDown() }, onTimeout = { })
+        watcher.watch(listOf(3), 3, 10, RetryDelayType.LINEAR, onComplete = { completed.countDown() }, onTimeout = { })
+        watcher.watch(
+            listOf(2, 4),
+            1,
+            10,
+            RetryDelayType.LINEAR,
+            onComplete = { },
+            onTimeout = {
+                missing = it
+                timedOut.countDown()
+            }
+        )
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS))
+        assertTrue(timedOut.await(5, TimeUnit.SECONDS))
+        assertEquals(listOf(4), missing)
+
+        // the first query included the keys of all three watches
+        assertEquals(setOf(1, 2, 3, 4), queries.first().toSet())
+        // the retry only asked for the key that was still missing
+        assertEquals(listOf(4), queries[1])
+        assertEquals(0, watcher.pendingCount)
+    }
+
+    @Test
+    fun forPlatformReleasesPlatformTest() {
+        val reference = createSharedEngine()
+        for (i in 0 until 50) {
+            if (reference.get() == null) {
+                break
+            }
+            System.gc()
+            Thread.sleep(20)
+        }
+        // the shared engine does not keep its platform from being collected
+        assertNull(reference.get())
+    }
+
+    private fun createSharedEngine(): WeakReference<Platform> {
+        val platform = Platform(TestNet3Params.get())
+        val sharedEngine = WatchEngine.forPlatform(platform)
+        assertSame(sharedEngine, WatchEngine.forPlatform(platform))
+        return WeakReference(platform)
+    }
+}
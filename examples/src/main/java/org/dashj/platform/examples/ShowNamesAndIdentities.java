@@ -0,0 +1,49 @@
+package org.dashj.platform.examples;
+
+import org.dashj.platform.dpp.document.Document;
+import org.dashj.platform.dpp.identifier.Identifier;
+import org.dashj.platform.dpp.identity.Identity;
+import org.dashj.platform.sdk.Client;
+import org.dashj.platform.sdk.client.ClientOptions;
+import org.dashj.platform.sdk.platform.DomainDocument;
+import org.dashj.platform.sdk.platform.async.AsyncPlatform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class ShowNamesAndIdentities {
+
+    public static void main(String [] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: ShowNamesAndIdentities identityId [identityId ...]");
+            return;
+        }
+        Client sdk = new Client(ClientOptions.builder().network("testnet").build());
+
+        List<Identifier> userIds = new ArrayList<>();
+        for (String arg : args) {
+            userIds.add(Identifier.from(arg));
+        }
+
+        AsyncPlatform platform = new AsyncPlatform(sdk.getPlatform());
+
+        // the names and identities are requested at the same time
+        platform.getNames(userIds)
+                .thenCombine(platform.getIdentities(userIds), ShowNamesAndIdentities::print)
+                .join();
+    }
+
+    private static Void print(List<Document> names, Map<Identifier, Identity> identities) {
+        for (Document document : names) {
+            DomainDocument name = new DomainDocument(document);
+            Identity identity = identities.get(name.getDashUniqueIdentityId());
+            System.out.println(
+                    String.format("Name: %-20s", name.getLabel()) +
+                            " Identity: " + name.getDashUniqueIdentityId() +
+                            " Balance: " + (identity != null ? identity.getBalance() : "not found")
+            );
+        }
+        return null;
+    }
+}
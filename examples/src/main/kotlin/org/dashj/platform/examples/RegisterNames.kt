@@ -9,6 +9,7 @@ package org.dashj.platform.examples
 import org.bitcoinj.evolution.CreditFundingTransaction
 import org.dashj.platform.sdk.Client
 import org.dashj.platform.sdk.client.ClientOptions
+import org.dashj.platform.sdk.platform.NameRegistration
 import org.json.JSONObject
 
 /**
@@ -22,8 +23,32 @@ class RegisterNames {
 
         @JvmStatic
         fun main(args: Array<String>) {
-            for (i in 1 until args.size)
-                registerName(args[i])
+            registerNames(args.drop(1))
+        }
+
+        /**
+         * Registers all of the names with two transitions instead of two per name
+         */
+        fun registerNames(names: List<String>) {
+            val platform = sdk.platform
+
+            val cftx = CreditFundingTransaction(platform.params, DefaultIdentity.creditBurnTx)
+            cftx.setCreditBurnPublicKeyAndIndex(DefaultIdentity.identityPrivateKey, 0)
+
+            val identityPrivateKey = DefaultIdentity.identityPrivateKey
+            val identity = platform.identities.get(cftx.creditBurnIdentityIdentifier.toStringBase58())!!
+
+            val registrations = names.map { NameRegistration(identity, it, identityPrivateKey) }
+            platform.names.registerAll(registrations) { result ->
+                when (result.status) {
+                    NameRegistration.Status.REGISTERED -> {
+                        println("Name Created: ${result.registration.name}")
+                        println(JSONObject(result.document!!.toJSON()).toString(2))
+                    }
+                    NameRegistration.Status.UNAVAILABLE -> println("ERROR: username ${result.registration.name} already exists")
+                    else -> println("ERROR: ${result.registration.name}: ${result.error?.localizedMessage}")
+                }
+            }
         }
 
         fun registerName(name: String) {
@@ -20,6 +20,7 @@ import org.dashj.platform.dapiclient.DapiClient
 import org.dashj.platform.sdk.client.ClientApps
 import org.dashj.platform.sdk.client.ClientOptions
 import org.dashj.platform.sdk.platform.Platform
+import org.dashj.platform.sdk.platform.PlatformExecutor
 
 class Client(private val clientOptions: ClientOptions) {
     val params = when (clientOptions.network) {
@@ -91,5 +92,9 @@ class Client(private val clientOptions: ClientOptions) {
 
         // Client Apps
         platform.apps.putAll(clientOptions.apps)
+
+        if (clientOptions.executionMode != platform.executor.requestedMode || clientOptions.maxThreads != platform.executor.maxThreads) {
+            platform.executor = PlatformExecutor(clientOptions.executionMode, clientOptions.maxThreads)
+        }
     }
 }
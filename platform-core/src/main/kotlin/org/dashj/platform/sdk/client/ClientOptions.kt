@@ -8,6 +8,7 @@ package org.dashj.platform.sdk.client
 
 import org.dashj.platform.dapiclient.DapiClient
 import org.dashj.platform.dapiclient.provider.DAPIAddressListProvider
+import org.dashj.platform.sdk.platform.PlatformExecutor
 
 class ClientOptions(
     val apps: Map<String, ClientAppDefinition> = mapOf(),
@@ -19,7 +20,9 @@ class ClientOptions(
     val dapiAddresses: List<String> = listOf(),
     val timeout: Long = DapiClient.DEFAULT_TIMEOUT,
     val retries: Int = DapiClient.DEFAULT_RETRY_COUNT,
-    val banBaseTime: Int = DapiClient.DEFAULT_BASE_BAN_TIME
+    val banBaseTime: Int = DapiClient.DEFAULT_BASE_BAN_TIME,
+    val executionMode: ExecutionMode = ExecutionMode.PLATFORM_THREADS,
+    val maxThreads: Int = PlatformExecutor.DEFAULT_MAX_THREADS
 ) {
     constructor(network: String) : this(mapOf(), null, 0, network = network)
 
@@ -33,7 +36,9 @@ class ClientOptions(
         private val dapiAddresses: ArrayList<String> = arrayListOf(),
         private var timeout: Long = DapiClient.DEFAULT_TIMEOUT,
         private var retries: Int = DapiClient.DEFAULT_RETRY_COUNT,
-        private var banBaseTime: Int = DapiClient.DEFAULT_BASE_BAN_TIME
+        private var banBaseTime: Int = DapiClient.DEFAULT_BASE_BAN_TIME,
+        private var executionMode: ExecutionMode = ExecutionMode.PLATFORM_THREADS,
+        private var maxThreads: Int = PlatformExecutor.DEFAULT_MAX_THREADS
     ) {
         fun app(name: String, definition: ClientAppDefinition) = apply {
             apps[name] = definition
@@ -77,8 +82,14 @@ class ClientOptions(
         fun baseBanTime(banBaseTime: Int) = apply {
             this.banBaseTime = banBaseTime
         }
+        fun executionMode(executionMode: ExecutionMode) = apply {
+            this.executionMode = executionMode
+        }
+        fun maxThreads(maxThreads: Int) = apply {
+            this.maxThreads = maxThreads
+        }
         fun build(): ClientOptions {
-            return ClientOptions(apps, walletOptions, walletAccountIndex, network, seeds, dapiAddressListProvider, dapiAddresses, timeout, retries, banBaseTime)
+            return ClientOptions(apps, walletOptions, walletAccountIndex, network, seeds, dapiAddressListProvider, dapiAddresses, timeout, retries, banBaseTime, executionMode, maxThreads)
         }
     }
     companion object {
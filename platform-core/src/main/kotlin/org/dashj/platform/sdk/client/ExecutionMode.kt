@@ -0,0 +1,17 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.client
+
+/**
+ * Determines which threads run the blocking work of the SDK's async APIs
+ */
+enum class ExecutionMode {
+    /** a bounded pool of platform threads (see [ClientOptions.maxThreads]) */
+    PLATFORM_THREADS,
+    /** a virtual thread per task when the JVM supports them (Java 21+), otherwise [PLATFORM_THREADS] */
+    VIRTUAL_THREADS
+}
@@ -14,8 +14,7 @@ abstract class AbstractDocument(val document: Document) {
 
     val dataContractId: Identifier
         get() = document.dataContractId
-    val id: String
-        get() = document.id.toString()
+    val id: String by field { document.id.toString() }
     val ownerId: Identifier
         get() = document.ownerId
     val protocolVersion: Int
@@ -35,6 +34,14 @@ abstract class AbstractDocument(val document: Document) {
         return document.toObject()
     }
 
+    /**
+     * Memoizes a value that is derived from [document], such as a decoded field, so that it is
+     * computed at most once per instance.  Documents are not modified after they are wrapped.
+     */
+    protected fun <T> field(initializer: () -> T): Lazy<T> {
+        return lazy(LazyThreadSafetyMode.PUBLICATION, initializer)
+    }
+
     protected fun getFieldString(fieldName: String): String? {
         val field = document.data[fieldName]
         return if (field != null) {
@@ -13,6 +13,7 @@ import org.dashj.platform.dpp.contract.DataContractCreateTransition
 import org.dashj.platform.dpp.identifier.Identifier
 import org.dashj.platform.dpp.identity.Identity
 import org.dashj.platform.sdk.client.ClientAppDefinition
+import org.dashj.platform.sdk.platform.trace.DapiTrace
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
@@ -52,11 +53,22 @@ class Contracts(val platform: Platform) {
         if (localContract?.contract != null) {
             return localContract.contract
         } else {
+            val traceRecorder = platform.traceRecorder
+            val traceReplayer = platform.traceReplayer
+            val traceRequest = if (traceRecorder != null || traceReplayer != null) DapiTrace.dataContractRequest(identifier) else null
+            val started = System.nanoTime()
             try {
-                val contractResponse = platform.client.getDataContract(identifier.toBuffer(), Features.proveContracts, platform.contractsRetryCallback)
+                val contract = if (traceReplayer != null) {
+                    val entry = traceReplayer.replay(DapiTrace.Kind.GET_DATA_CONTRACT, traceRequest!!)
+                    platform.dpp.dataContract.createFromBuffer(entry.payloads[0])
+                } else {
+                    val contractResponse = platform.client.getDataContract(identifier.toBuffer(), Features.proveContracts, platform.contractsRetryCallback)
+                    traceRecorder?.record(DapiTrace.Kind.GET_DATA_CONTRACT, traceRequest!!, started, listOf(contractResponse.dataContract))
 
-                val contract = platform.dpp.dataContract.createFromBuffer(contractResponse.dataContract)
-                contract.metadata = contractResponse.metadata.getMetadata()
+                    platform.dpp.dataContract.createFromBuffer(contractResponse.dataContract).apply {
+                        metadata = contractResponse.metadata.getMetadata()
+                    }
+                }
 
                 val app = ClientAppDefinition(contract.id, contract)
                 // If we do not have even the identifier in this.apps, we add it with timestamp as key
@@ -67,6 +79,9 @@ class Contracts(val platform: Platform) {
                 }
                 return contract
             } catch (e: Exception) {
+                if (traceReplayer == null) {
+                    traceRecorder?.recordError(DapiTrace.Kind.GET_DATA_CONTRACT, traceRequest!!, started, e)
+                }
                 log.error("Failed to get dataContract: $e")
                 throw e
             }
@@ -7,6 +7,7 @@
 package org.dashj.platform.sdk.platform
 
 import io.grpc.StatusRuntimeException
+import java.util.concurrent.ConcurrentHashMap
 import org.bitcoinj.core.ECKey
 import org.dashj.platform.dapiclient.model.DocumentQuery
 import org.dashj.platform.dpp.Factory
@@ -15,6 +16,7 @@ import org.dashj.platform.dpp.errors.DriveErrorMetadata
 import org.dashj.platform.dpp.identifier.Identifier
 import org.dashj.platform.dpp.identity.Identity
 import org.dashj.platform.sdk.platform.multicall.MulticallQuery
+import org.dashj.platform.sdk.platform.trace.DapiTrace
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
@@ -22,6 +24,7 @@ class Documents(val platform: Platform) {
 
     companion object {
         const val DOCUMENT_LIMIT = 100
+        const val DEFAULT_IN_PARALLELISM = 4
         private val log: Logger = LoggerFactory.getLogger(Documents::class.java)
     }
 
@@ -42,25 +45,41 @@ class Documents(val platform: Platform) {
         platform.broadcastStateTransition(batch, identity, privateKey)
     }
 
+    private val preparedTypes = ConcurrentHashMap<String, PreparedDocumentType>()
+
     fun create(typeLocator: String, userId: Identifier, opts: MutableMap<String, Any?>): Document {
-        val dpp = platform.dpp
+        return prepare(typeLocator).create(userId, opts)
+    }
 
-        val appNames = platform.apps.keys
+    /**
+     * Resolves the data contract of a document type once, so that later calls to [create] for
+     * the same type do not look up the contract.  The result is cached for each type locator.
+     *
+     * @param typeLocator String in the form of "appname.document_type"
+     */
+    fun prepare(typeLocator: String): PreparedDocumentType {
+        preparedTypes[typeLocator]?.let { return it }
 
-        val (appName, fieldType) = getAppnameAndType(typeLocator, appNames)
+        val (appName, fieldType) = getAppnameAndType(typeLocator, platform.apps.keys)
 
         if (!platform.apps.containsKey(appName)) {
             throw Exception("Cannot find contractId for $appName")
         }
 
         val dataContract = platform.contracts.get(platform.apps[appName]!!.contractId)
+            ?: throw Exception("Cannot find contract for $appName")
 
-        return dpp.document.create(
-            dataContract!!,
-            userId,
-            fieldType,
-            opts
-        )
+        val preparedType = PreparedDocumentType(platform, typeLocator, dataContract, fieldType)
+        preparedTypes[typeLocator] = preparedType
+        return preparedType
+    }
+
+    /**
+     * Removes all types resolved by [prepare], which is required if a contract in [Platform.apps]
+     * is replaced
+     */
+    fun clearPrepared() {
+        preparedTypes.clear()
     }
 
     /**
@@ -89,7 +108,8 @@ class Documents(val platform: Platform) {
 
     /**
      * Fetches all results that match the query this allows limit to be greater than 100
-     * and will return more than 100 results
+     * and will return more than 100 results.  No more pages are requested once the limit
+     * of the query has been reached.
      */
     fun getAll(
         typeLocator: String,
@@ -108,6 +128,10 @@ class Documents(val platform: Platform) {
 
         do {
             try {
+                // the last page only requests the documents that remain
+                if (limit != -1) {
+                    query.limit = minOf(DOCUMENT_LIMIT, limit - total)
+                }
                 documentList =
                     platform.documents.get(
                         typeLocator,
@@ -133,11 +157,54 @@ class Documents(val platform: Platform) {
                 log.warn("Exception $e")
                 throw e
             }
-        } while ((requests == 0 || documentList.size >= DOCUMENT_LIMIT))
+        } while ((requests == 0 || documentList.size >= DOCUMENT_LIMIT) && (limit == -1 || total < limit))
 
         return documents
     }
 
+    /**
+     * Fetches the documents where [field] is any of [values].  Since an "in" clause is limited
+     * to [DOCUMENT_LIMIT] values, the values are split into chunks that are queried concurrently
+     * on [Platform.executor].
+     *
+     * Each chunk is expected to match at most [DOCUMENT_LIMIT] documents, such as when [field]
+     * is unique.
+     *
+     * @param extraWhere additional where clauses, such as listOf("\$updatedAt", ">", 0)
+     * @param orderBy pairs of field names and whether they are ascending, which must start with [field]
+     * @param parallelism the maximum number of chunks to query at the same time
+     * @return the documents in the order of the chunks, without duplicates
+     */
+    @JvmOverloads
+    fun getByIn(
+        typeLocator: String,
+        field: String,
+        values: List<Any>,
+        extraWhere: List<List<Any>> = listOf(),
+        orderBy: List<Pair<String, Boolean>> = listOf(Pair(field, true)),
+        parallelism: Int = DEFAULT_IN_PARALLELISM
+    ): List<Document> {
+        require(parallelism > 0) { "parallelism must be positive: $parallelism" }
+        val chunks = values.distinct().chunked(DOCUMENT_LIMIT)
+
+        val getChunk = { chunk: List<Any> ->
+            val documentQuery = DocumentQuery.Builder().whereIn(field, chunk)
+            extraWhere.forEach { documentQuery.where(it) }
+            orderBy.forEach { documentQuery.orderBy(it.first, it.second) }
+            get(typeLocator, documentQuery.build())
+        }
+
+        val results = if (chunks.size == 1 || parallelism == 1) {
+            chunks.map(getChunk)
+        } else {
+            platform.executor.fanOutMap(chunks, parallelism, getChunk)
+        }
+
+        val documents = LinkedHashMap<Identifier, Document>()
+        results.forEach { chunk -> chunk.forEach { documents.putIfAbsent(it.id, it) } }
+        return documents.values.toList()
+    }
+
     fun get(typeLocator: String, opts: DocumentQuery): List<Document> {
         return get(typeLocator, opts, MulticallQuery.Companion.CallType.FIRST)
     }
@@ -166,6 +233,16 @@ class Documents(val platform: Platform) {
         opts: DocumentQuery,
         callType: MulticallQuery.Companion.CallType = MulticallQuery.Companion.CallType.FIRST
     ): List<Document> {
+        // read once, since tracing may be started or stopped by another thread
+        val traceRecorder = platform.traceRecorder
+        val traceReplayer = platform.traceReplayer
+        val traceRequest = if (traceRecorder != null || traceReplayer != null) DapiTrace.documentsRequest(dataContractId, documentType, opts) else null
+        traceReplayer?.let { replayer ->
+            return replayer.replay(DapiTrace.Kind.GET_DOCUMENTS, traceRequest!!).payloads.map {
+                platform.dpp.document.createFromBuffer(it, Factory.Options(true))
+            }
+        }
+        val started = System.nanoTime()
         try {
             val documentResponse = platform.client.getDocuments(
                 dataContractId.toBuffer(),
@@ -174,12 +251,14 @@ class Documents(val platform: Platform) {
                 Features.proveDocuments,
                 platform.documentsRetryCallback
             )
+            traceRecorder?.record(DapiTrace.Kind.GET_DOCUMENTS, traceRequest!!, started, documentResponse.documents)
             return documentResponse.documents.map {
                 val document = platform.dpp.document.createFromBuffer(it, Factory.Options(true))
                 document.metadata = documentResponse.metadata.getMetadata()
                 document
             }
         } catch (e: StatusRuntimeException) {
+            traceRecorder?.recordError(DapiTrace.Kind.GET_DOCUMENTS, traceRequest!!, started, e)
             log.error(
                 "Document query: unable to get documents of $dataContractId: " +
                     "${DriveErrorMetadata(e.trailers.toString())}",
@@ -187,6 +266,7 @@ class Documents(val platform: Platform) {
             )
             throw e
         } catch (e: Exception) {
+            traceRecorder?.recordError(DapiTrace.Kind.GET_DOCUMENTS, traceRequest!!, started, e)
             log.error("Document query: unable to get documents of $dataContractId", e)
             throw e
         }
@@ -10,41 +10,34 @@ import org.dashj.platform.dpp.document.Document
 import org.dashj.platform.dpp.identifier.Identifier
 
 class DomainDocument(document: Document) : AbstractDocument(document) {
-    val label: String
-        get() = getFieldString("label")!!
-    val normalizedLabel: String
-        get() = getFieldString("normalizedLabel")!!
-    val normalizedParentDomainName: String
-        get() = getFieldString("normalizedParentDomainName")!!
-    val dashAliasIdentityId: Identifier?
-        get() {
-            val records = getFieldMap("records")
-            return if (records != null && records.containsKey("dashAliasIdentityId")) {
-                Identifier.from(records["dashAliasIdentityId"])
-            } else {
-                null
-            }
+    val label: String by field { getFieldString("label")!! }
+    val normalizedLabel: String by field { getFieldString("normalizedLabel")!! }
+    val normalizedParentDomainName: String by field { getFieldString("normalizedParentDomainName")!! }
+    val dashAliasIdentityId: Identifier? by field {
+        val records = getFieldMap("records")
+        if (records != null && records.containsKey("dashAliasIdentityId")) {
+            Identifier.from(records["dashAliasIdentityId"])
+        } else {
+            null
         }
-    val dashUniqueIdentityId: Identifier?
-        get() {
-            val records = getFieldMap("records")
-            return if (records != null && records.containsKey("dashUniqueIdentityId")) {
-                Identifier.from(records["dashUniqueIdentityId"])
-            } else {
-                null
-            }
+    }
+    val dashUniqueIdentityId: Identifier? by field {
+        val records = getFieldMap("records")
+        if (records != null && records.containsKey("dashUniqueIdentityId")) {
+            Identifier.from(records["dashUniqueIdentityId"])
+        } else {
+            null
         }
-    val allowSubdomains: Boolean
-        get() {
-            val subdomainRules = getFieldMap("subdomainRules")
-            return if (subdomainRules != null && subdomainRules.containsKey("allowSubdomains")) {
-                subdomainRules["allowSubdomains"] as Boolean
-            } else {
-                false
-            }
+    }
+    val allowSubdomains: Boolean by field {
+        val subdomainRules = getFieldMap("subdomainRules")
+        if (subdomainRules != null && subdomainRules.containsKey("allowSubdomains")) {
+            subdomainRules["allowSubdomains"] as Boolean
+        } else {
+            false
         }
-    val preorderSalt: ByteArray
-        get() = getFieldByteArray("preorderSalt")!!
+    }
+    val preorderSalt: ByteArray by field { getFieldByteArray("preorderSalt")!! }
 
     override fun toString(): String {
         return "DomainDocument(label=$label, records.dashUniqueIdentityId=$dashUniqueIdentityId)"
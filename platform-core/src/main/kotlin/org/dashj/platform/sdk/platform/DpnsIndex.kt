@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform
+
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dpp.document.Document
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.util.Cbor
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * A local copy of the dpns.domain documents with indexes on fields that Platform cannot
+ * query, such as records.dashAliasIdentityId
+ *
+ * The index is filled by [sync], which scans all domain documents the first time and afterwards
+ * only requests the domains created since the newest one in the index, less [overlapMillis]
+ * since $createdAt is set by the client that registers the name.  It is also kept up to date by
+ * [add] as names are registered or found.  It can be saved to a file so that it does not need
+ * to be rebuilt on each start, and [load] then syncs the names registered since it was saved.
+ *
+ * Enable it with [Names.index].
+ *
+ * @param overlapMillis how far before the newest domain to query again
+ */
+class DpnsIndex @JvmOverloads constructor(
+    val platform: Platform,
+    val overlapMillis: Long = DEFAULT_OVERLAP
+) {
+
+    companion object {
+        const val DEFAULT_OVERLAP = 12 * 60 * 1000L
+        private val log: Logger = LoggerFactory.getLogger(DpnsIndex::class.java)
+        private val MAGIC = byteArrayOf('D'.toByte(), 'P'.toByte(), 'N'.toByte(), 'X'.toByte())
+        private const val VERSION = 1
+    }
+
+    private val documents = hashMapOf<Identifier, Document>()
+    private val byName = hashMapOf<String, Identifier>()
+    private val byUniqueId = hashMapOf<Identifier, MutableSet<Identifier>>()
+    private val byAliasId = hashMapOf<Identifier, MutableSet<Identifier>>()
+    private val byOwnerId = hashMapOf<Identifier, MutableSet<Identifier>>()
+
+    /** the time of the last [sync] in ms since epoch, 0 if never */
+    var syncedAt = 0L
+        private set
+
+    /** the newest $createdAt of the domains in the index */
+    var latestCreatedAt = 0L
+        @Synchronized get
+        private set
+
+    val size: Int
+        @Synchronized get() = documents.size
+
+    /**
+     * Adds the domain documents from Platform to the index that are not in it, which are all
+     * of them the first time
+     *
+     * @return the number of documents in the index
+     */
+    fun sync(): Int {
+        val (firstSync, since) = synchronized(this) {
+            Pair(syncedAt == 0L, if (latestCreatedAt == 0L) 0L else maxOf(0L, latestCreatedAt - overlapMillis - 1))
+        }
+        val startedAt = System.currentTimeMillis()
+        val fetched = if (firstSync) {
+            platform.documents.getAll(Names.DPNS_DOMAIN_DOCUMENT, DocumentQuery.builder().limit(-1).build())
+        } else {
+            platform.names.getCreatedAfter(since)
+        }
+        synchronized(this) {
+            fetched.forEach { add(it) }
+            syncedAt = startedAt
+        }
+        log.info("synced DPNS index: ${fetched.size} domains fetched, ${documents.size} domains")
+        return size
+    }
+
+    /** @return the domains in the index where $createdAt > [createdAt] */
+    @Synchronized
+    fun getCreatedAfter(createdAt: Long): List<Document> {
+        return documents.values.filter { (it.createdAt ?: 0L) > createdAt }
+    }
+
+    @Synchronized
+    fun add(document: Document) {
+        documents[document.id]?.let { remove(it.id) }
+        val domain = DomainDocument(document)
+        documents[document.id] = document
+        byName[NameCache.nameKey(domain.normalizedLabel, domain.normalizedParentDomainName)] = document.id
+        domain.dashUniqueIdentityId?.let { byUniqueId.getOrPut(it) { linkedSetOf() }.add(document.id) }
+        domain.dashAliasIdentityId?.let { byAliasId.getOrPut(it) { linkedSetOf() }.add(document.id) }
+        byOwnerId.getOrPut(document.ownerId) { linkedSetOf() }.add(document.id)
+        latestCreatedAt = maxOf(latestCreatedAt, document.createdAt ?: 0L)
+    }
+
+    @Synchronized
+    fun remove(documentId: Identifier) {
+        val document = documents.remove(documentId) ?: return
+        val domain = DomainDocument(document)
+        byName.remove(NameCache.nameKey(domain.normalizedLabel, domain.normalizedParentDomainName))
+        domain.dashUniqueIdentityId?.let { byUniqueId[it]?.remove(documentId) }
+        domain.dashAliasIdentityId?.let { byAliasId[it]?.remove(documentId) }
+        byOwnerId[document.ownerId]?.remove(documentId)
+    }
+
+    private fun lookup(ids: Set<Identifier>?): List<Document> {
+        return ids?.mapNotNull { documents[it] } ?: listOf()
+    }
+
+    @Synchronized
+    fun getByName(normalizedLabel: String, normalizedParentDomainName: String = Names.DEFAULT_PARENT_DOMAIN): Document? {
+        return byName[NameCache.nameKey(normalizedLabel, normalizedParentDomainName)]?.let { documents[it] }
+    }
+
+    @Synchronized
+    fun getByUniqueIdentityId(identityId: Identifier): List<Document> = lookup(byUniqueId[identityId])
+
+    @Synchronized
+    fun getByAliasIdentityId(identityId: Identifier): List<Document> = lookup(byAliasId[identityId])
+
+    @Synchronized
+    fun getByOwnerId(ownerId: Identifier): List<Document> = lookup(byOwnerId[ownerId])
+
+    /**
+     * @return all normalized labels under [normalizedParentDomainName] in sorted order
+     */
+    @Synchronized
+    fun labels(normalizedParentDomainName: String = Names.DEFAULT_PARENT_DOMAIN): List<String> {
+        return documents.values.map { DomainDocument(it) }
+            .filter { it.normalizedParentDomainName == normalizedParentDomainName }
+            .map { it.normalizedLabel }
+            .sorted()
+    }
+
+    /**
+     * @return pairs of normalized label and normalized parent domain name of all domains
+     */
+    @Synchronized
+    fun names(): List<Pair<String, String>> {
+        return documents.values.map { DomainDocument(it) }.map { Pair(it.normalizedLabel, it.normalizedParentDomainName) }
+    }
+
+    @Synchronized
+    fun save(file: File) {
+        val temp = File(file.path + ".tmp")
+        DataOutputStream(BufferedOutputStream(GZIPOutputStream(FileOutputStream(temp)))).use { output ->
+            output.write(MAGIC)
+            output.writeByte(VERSION)
+            output.writeLong(syncedAt)
+            output.writeInt(documents.size)
+            for (document in documents.values) {
+                val bytes = Cbor.encode(document.toObject())
+                output.writeInt(bytes.size)
+                output.write(bytes)
+            }
+        }
+        if (!temp.renameTo(file)) {
+            file.delete()
+            if (!temp.renameTo(file)) {
+                throw IOException("unable to write DPNS index to $file")
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents of this index with those saved by [save]
+     *
+     * @param sync whether to [sync] the domains that were registered since the index was saved
+     */
+    @JvmOverloads
+    fun load(file: File, sync: Boolean = true) {
+        read(file)
+        if (sync && syncedAt != 0L) {
+            sync()
+        }
+    }
+
+    @Synchronized
+    private fun read(file: File) {
+        DataInputStream(BufferedInputStream(GZIPInputStream(FileInputStream(file)))).use { input ->
+            val magic = ByteArray(MAGIC.size)
+            input.readFully(magic)
+            if (!magic.contentEquals(MAGIC)) {
+                throw IOException("$file is not a DPNS index")
+            }
+            val version = input.readUnsignedByte()
+            if (version != VERSION) {
+                throw IOException("unsupported DPNS index version: $version")
+            }
+            clear()
+            syncedAt = input.readLong()
+            val count = input.readInt()
+            for (i in 0 until count) {
+                val bytes = ByteArray(input.readInt())
+                input.readFully(bytes)
+                add(platform.dpp.document.createFromObject(Cbor.decode(bytes)))
+            }
+        }
+        log.info("loaded DPNS index: ${documents.size} domains")
+    }
+
+    @Synchronized
+    fun clear() {
+        documents.clear()
+        byName.clear()
+        byUniqueId.clear()
+        byAliasId.clear()
+        byOwnerId.clear()
+        syncedAt = 0
+        latestCreatedAt = 0
+    }
+}
@@ -16,6 +16,7 @@ import org.dashj.platform.dpp.identity.ChainAssetLockProof
 import org.dashj.platform.dpp.identity.Identity
 import org.dashj.platform.dpp.identity.IdentityPublicKey
 import org.dashj.platform.dpp.identity.InstantAssetLockProof
+import org.dashj.platform.sdk.platform.trace.DapiTrace
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
@@ -111,19 +112,68 @@ class Identities(val platform: Platform) {
     }
 
     fun get(id: Identifier): Identity? {
+        val traceRecorder = platform.traceRecorder
+        val traceReplayer = platform.traceReplayer
+        val traceRequest = if (traceRecorder != null || traceReplayer != null) DapiTrace.identityRequest(id) else null
+        traceReplayer?.let { replayer ->
+            val entry = replayer.replay(DapiTrace.Kind.GET_IDENTITY, traceRequest!!)
+            return if (entry.status == DapiTrace.Status.OK) {
+                platform.dpp.identity.createFromBuffer(entry.payloads[0])
+            } else {
+                null
+            }
+        }
+        val started = System.nanoTime()
         return try {
             val identityResponse =
                 platform.client.getIdentity(id.toBuffer(), Features.proveIdentities, platform.identitiesRetryCallback)
+            traceRecorder?.record(DapiTrace.Kind.GET_IDENTITY, traceRequest!!, started, listOf(identityResponse.identity))
             val identity = platform.dpp.identity.createFromBuffer(identityResponse.identity)
             identity.metadata = identityResponse.metadata.getMetadata()
             identity
         } catch (e: NotFoundException) {
+            traceRecorder?.recordNotFound(DapiTrace.Kind.GET_IDENTITY, traceRequest!!, started)
             null
+        } catch (e: Exception) {
+            traceRecorder?.recordError(DapiTrace.Kind.GET_IDENTITY, traceRequest!!, started, e)
+            throw e
         }
     }
 
+    /**
+     * Requests the identities concurrently on [Platform.executor]
+     *
+     * @return a map of the identities that were found
+     */
+    fun getList(ids: Collection<Identifier>): Map<Identifier, Identity> {
+        val identities = platform.executor.fanOutMap(ids.distinct()) { id -> Pair(id, get(id)) }
+        return identities.mapNotNull { (id, identity) -> identity?.let { id to it } }.toMap()
+    }
+
     fun getByPublicKeyHash(pubKeyHash: ByteArray): Identity? {
-        val identityBuffer = platform.client.getIdentityByFirstPublicKey(pubKeyHash, true) ?: return null
+        val traceRecorder = platform.traceRecorder
+        val traceReplayer = platform.traceReplayer
+        val traceRequest = if (traceRecorder != null || traceReplayer != null) DapiTrace.publicKeyHashRequest(pubKeyHash) else null
+        traceReplayer?.let { replayer ->
+            val entry = replayer.replay(DapiTrace.Kind.GET_IDENTITY_BY_PUBLIC_KEY_HASH, traceRequest!!)
+            return if (entry.status == DapiTrace.Status.OK) {
+                platform.dpp.identity.createFromBuffer(entry.payloads[0])
+            } else {
+                null
+            }
+        }
+        val started = System.nanoTime()
+        val identityBuffer = try {
+            platform.client.getIdentityByFirstPublicKey(pubKeyHash, true)
+        } catch (e: Exception) {
+            traceRecorder?.recordError(DapiTrace.Kind.GET_IDENTITY_BY_PUBLIC_KEY_HASH, traceRequest!!, started, e)
+            throw e
+        }
+        if (identityBuffer == null) {
+            traceRecorder?.recordNotFound(DapiTrace.Kind.GET_IDENTITY_BY_PUBLIC_KEY_HASH, traceRequest!!, started)
+            return null
+        }
+        traceRecorder?.record(DapiTrace.Kind.GET_IDENTITY_BY_PUBLIC_KEY_HASH, traceRequest!!, started, listOf(identityBuffer))
         return platform.dpp.identity.createFromBuffer(identityBuffer)
     }
 
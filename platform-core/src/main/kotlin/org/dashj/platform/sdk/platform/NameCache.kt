@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform
+
+import java.util.concurrent.ConcurrentHashMap
+import org.dashj.platform.dpp.document.Document
+import org.dashj.platform.dpp.identifier.Identifier
+
+/**
+ * Caches DPNS lookups made by [Names] in both directions: from a name to its domain document
+ * and from an identity to its domain documents.
+ *
+ * Names that do not exist are also cached, but for [negativeTtlMillis], which is much shorter
+ * than [positiveTtlMillis] so that a name that is registered by someone else is soon found.
+ *
+ * @param maxEntries the maximum number of entries in each direction
+ * @param clock returns the current time in milliseconds
+ */
+class NameCache @JvmOverloads constructor(
+    var positiveTtlMillis: Long = DEFAULT_POSITIVE_TTL,
+    var negativeTtlMillis: Long = DEFAULT_NEGATIVE_TTL,
+    val maxEntries: Int = DEFAULT_MAX_ENTRIES,
+    private val clock: () -> Long = { System.currentTimeMillis() }
+) {
+    companion object {
+        const val DEFAULT_POSITIVE_TTL = 10 * 60 * 1000L
+        const val DEFAULT_NEGATIVE_TTL = 30 * 1000L
+        const val DEFAULT_MAX_ENTRIES = 10000
+
+        fun nameKey(normalizedLabel: String, normalizedParentDomainName: String): String {
+            return "${normalizedLabel.toLowerCase()}.${normalizedParentDomainName.toLowerCase()}"
+        }
+    }
+
+    /**
+     * A cached lookup
+     *
+     * @property value the result, which is null or empty if nothing was found
+     */
+    class Entry<T>(val value: T, val expiresAt: Long)
+
+    private val byName = ConcurrentHashMap<String, Entry<Document?>>()
+    private val byOwner = ConcurrentHashMap<Identifier, Entry<List<Document>>>()
+
+    private fun <K, T> get(map: MutableMap<K, Entry<T>>, key: K): Entry<T>? {
+        val entry = map[key] ?: return null
+        if (entry.expiresAt <= clock()) {
+            map.remove(key, entry)
+            return null
+        }
+        return entry
+    }
+
+    private fun <K, T> put(map: MutableMap<K, Entry<T>>, key: K, value: T, found: Boolean) {
+        val ttl = if (found) positiveTtlMillis else negativeTtlMillis
+        if (ttl <= 0) {
+            return
+        }
+        if (map.size >= maxEntries) {
+            trim(map)
+        }
+        map[key] = Entry(value, clock() + ttl)
+    }
+
+    private fun <K, T> trim(map: MutableMap<K, Entry<T>>) {
+        val now = clock()
+        map.entries.removeIf { it.value.expiresAt <= now }
+        val iterator = map.keys.iterator()
+        while (map.size >= maxEntries && iterator.hasNext()) {
+            iterator.next()
+            iterator.remove()
+        }
+    }
+
+    /**
+     * @return null if the name is not cached, otherwise an entry whose value is the domain
+     * document or null if the name does not exist
+     */
+    fun getName(normalizedLabel: String, normalizedParentDomainName: String): Entry<Document?>? {
+        return get(byName, nameKey(normalizedLabel, normalizedParentDomainName))
+    }
+
+    fun putName(normalizedLabel: String, normalizedParentDomainName: String, document: Document?) {
+        put(byName, nameKey(normalizedLabel, normalizedParentDomainName), document, document != null)
+    }
+
+    /**
+     * @return null if the identity is not cached, otherwise an entry with its domain documents
+     */
+    fun getOwner(identityId: Identifier): Entry<List<Document>>? {
+        return get(byOwner, identityId)
+    }
+
+    /**
+     * Caches the domain documents of an identity, which are also cached by name
+     */
+    fun putOwner(identityId: Identifier, documents: List<Document>) {
+        put(byOwner, identityId, documents, documents.isNotEmpty())
+        documents.forEach { putDomain(it) }
+    }
+
+    /**
+     * Caches a domain document by its name
+     */
+    fun putDomain(document: Document) {
+        val label = document.data["normalizedLabel"] as? String ?: return
+        val parentDomain = document.data["normalizedParentDomainName"] as? String ?: return
+        putName(label, parentDomain, document)
+    }
+
+    fun invalidateName(normalizedLabel: String, normalizedParentDomainName: String) {
+        byName.remove(nameKey(normalizedLabel, normalizedParentDomainName))
+    }
+
+    fun invalidateOwner(identityId: Identifier) {
+        byOwner.remove(identityId)
+    }
+
+    fun clear() {
+        byName.clear()
+        byOwner.clear()
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform
+
+import java.lang.Long as JLong
+import kotlin.math.ceil
+import kotlin.math.exp
+import kotlin.math.ln
+import kotlin.math.max
+import kotlin.math.pow
+import kotlin.math.roundToInt
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dpp.document.Document
+
+/**
+ * A Bloom filter over registered names (normalized label and parent domain) that can answer
+ * "definitely not registered" without a query to Platform.  Names that might be registered
+ * still need to be checked with [Names.get].
+ *
+ * The filter is only as complete as the scan that built it plus the names added since.  Names
+ * registered by others after the scan are added by [refresh], which only requests the domains
+ * created since [latestCreatedAt].  [Names.isAvailable] refreshes [Names.filter] and rebuilds it
+ * once it is older than [Names.filterMaxAgeMillis].  Registration itself is still validated by
+ * Platform.
+ *
+ * @param expectedNames the number of names that the filter is sized for
+ * @param falsePositiveRate the probability that an unregistered name is reported as possibly
+ * registered when [expectedNames] have been added
+ */
+class NameFilter @JvmOverloads constructor(
+    val expectedNames: Int,
+    val falsePositiveRate: Double = DEFAULT_FALSE_POSITIVE_RATE
+) {
+    companion object {
+        const val DEFAULT_FALSE_POSITIVE_RATE = 0.01
+
+        /** extra capacity when a filter is built from a scan, for the names registered later */
+        private const val GROWTH_FACTOR = 1.5
+
+        /**
+         * Builds a filter from all domain documents, using [Names.index] if it is set or
+         * otherwise scanning dpns.domain
+         */
+        fun build(platform: Platform, falsePositiveRate: Double = DEFAULT_FALSE_POSITIVE_RATE): NameFilter {
+            val index = platform.names.index
+            return if (index != null) {
+                fromNames(index.names(), falsePositiveRate).also { it.latestCreatedAt = index.latestCreatedAt }
+            } else {
+                val query = DocumentQuery.builder().limit(-1).build()
+                fromDocuments(platform.documents.getAll(Names.DPNS_DOMAIN_DOCUMENT, query), falsePositiveRate)
+            }
+        }
+
+        fun fromDocuments(documents: List<Document>, falsePositiveRate: Double = DEFAULT_FALSE_POSITIVE_RATE): NameFilter {
+            val filter = NameFilter(ceil(documents.size * GROWTH_FACTOR).toInt(), falsePositiveRate)
+            documents.forEach { filter.add(it) }
+            filter.latestCreatedAt = documents.maxOfOrNull { it.createdAt ?: 0L } ?: 0L
+            return filter
+        }
+
+        /**
+         * @param names pairs of normalized label and normalized parent domain name
+         */
+        fun fromNames(names: Collection<Pair<String, String>>, falsePositiveRate: Double = DEFAULT_FALSE_POSITIVE_RATE): NameFilter {
+            val filter = NameFilter(ceil(names.size * GROWTH_FACTOR).toInt(), falsePositiveRate)
+            names.forEach { (label, parentDomain) -> filter.add(label, parentDomain) }
+            return filter
+        }
+
+        // the finalizer of MurmurHash3, which spreads the bits of FNV-1a
+        private fun mix(value: Long): Long {
+            var h = value
+            h = h xor (h ushr 33)
+            h *= -0xae502812aa7333L
+            h = h xor (h ushr 33)
+            h *= -0x3b314601e57a13adL
+            h = h xor (h ushr 33)
+            return h
+        }
+
+        private fun hash(key: String): Long {
+            var h = -0x340d631b7bdddcdbL // FNV-1a offset basis
+            for (b in key.toByteArray()) {
+                h = h xor (b.toLong() and 0xff)
+                h *= 0x100000001b3L // FNV-1a prime
+            }
+            return h
+        }
+    }
+
+    /** the number of bits in the filter */
+    val bitCount: Long
+    /** the number of bit positions set for each name */
+    val hashCount: Int
+    private val bits: LongArray
+
+    /** the time that the filter was created in ms since epoch */
+    val createdAt = System.currentTimeMillis()
+
+    /** the time of the last [refresh] in ms since epoch, or [createdAt] */
+    var refreshedAt = createdAt
+        @Synchronized get
+        private set
+
+    /**
+     * the newest $createdAt of the domains from Platform in the filter, 0 if unknown.  Names
+     * added by [add] do not change it, so that those registered by others before them are
+     * still requested by [refresh]
+     */
+    var latestCreatedAt = 0L
+        @Synchronized get
+        internal set
+
+    /** the number of names added, including duplicates */
+    var count = 0
+        private set
+
+    init {
+        require(expectedNames >= 0) { "expectedNames must not be negative" }
+        require(falsePositiveRate > 0.0 && falsePositiveRate < 1.0) { "falsePositiveRate must be between 0 and 1" }
+        val n = max(expectedNames, 1)
+        val m = ceil(-n * ln(falsePositiveRate) / (ln(2.0).pow(2))).toLong()
+        bits = LongArray(((m + 63) / 64).toInt())
+        bitCount = bits.size * 64L
+        hashCount = max(1, (bitCount.toDouble() / n * ln(2.0)).roundToInt())
+    }
+
+    private inline fun forEachBit(normalizedLabel: String, normalizedParentDomainName: String, action: (Int, Long) -> Boolean): Boolean {
+        val h = hash(NameCache.nameKey(normalizedLabel, normalizedParentDomainName))
+        val h1 = mix(h)
+        val h2 = mix(h xor -0x61c8864680b583ebL) or 1
+        for (i in 0 until hashCount) {
+            val index = JLong.remainderUnsigned(h1 + i * h2, bitCount)
+            if (!action((index ushr 6).toInt(), 1L shl (index and 63).toInt())) {
+                return false
+            }
+        }
+        return true
+    }
+
+    @Synchronized
+    fun add(normalizedLabel: String, normalizedParentDomainName: String = Names.DEFAULT_PARENT_DOMAIN) {
+        forEachBit(normalizedLabel, normalizedParentDomainName) { word, mask ->
+            bits[word] = bits[word] or mask
+            true
+        }
+        count++
+    }
+
+    fun add(domainDocument: Document) {
+        val domain = DomainDocument(domainDocument)
+        add(domain.normalizedLabel, domain.normalizedParentDomainName)
+    }
+
+    /**
+     * Adds the names created since [latestCreatedAt], less [overlapMillis] since $createdAt is
+     * set by the client that registers the name.  These are taken from [Names.index] after it
+     * is synced if it is set, or otherwise requested from dpns.domain.
+     *
+     * @return the number of names that were not already in the filter
+     */
+    @JvmOverloads
+    fun refresh(platform: Platform, overlapMillis: Long = DpnsIndex.DEFAULT_OVERLAP): Int {
+        val startedAt = System.currentTimeMillis()
+        val since = latestCreatedAt.let { if (it == 0L) 0L else maxOf(0L, it - overlapMillis - 1) }
+        val index = platform.names.index
+        val documents = if (index != null) {
+            index.sync()
+            index.getCreatedAfter(since)
+        } else {
+            platform.names.getCreatedAfter(since)
+        }
+        var added = 0
+        synchronized(this) {
+            for (document in documents) {
+                val domain = DomainDocument(document)
+                // names within the overlap are not counted again
+                if (!mightContain(domain.normalizedLabel, domain.normalizedParentDomainName)) {
+                    add(domain.normalizedLabel, domain.normalizedParentDomainName)
+                    added++
+                }
+                latestCreatedAt = maxOf(latestCreatedAt, document.createdAt ?: 0L)
+            }
+            refreshedAt = startedAt
+        }
+        return added
+    }
+
+    /**
+     * @return false if the name is definitely not registered (as of the scan that built this
+     * filter), true if it might be
+     */
+    @Synchronized
+    fun mightContain(normalizedLabel: String, normalizedParentDomainName: String = Names.DEFAULT_PARENT_DOMAIN): Boolean {
+        return forEachBit(normalizedLabel, normalizedParentDomainName) { word, mask ->
+            bits[word] and mask != 0L
+        }
+    }
+
+    /**
+     * The false positive rate for the number of names that have been added, which exceeds
+     * [falsePositiveRate] once more than [expectedNames] are added
+     */
+    val currentFalsePositiveRate: Double
+        get() = (1 - exp(-hashCount.toDouble() * count / bitCount)).pow(hashCount)
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform
+
+import org.bitcoinj.core.ECKey
+import org.dashj.platform.dpp.document.Document
+import org.dashj.platform.dpp.identity.Identity
+
+/**
+ * A name to register with [Names.registerAll]
+ *
+ * @param privateKey the private key of the identity, which signs the preorder (key 0) and
+ * domain (key 1) transitions
+ */
+class NameRegistration @JvmOverloads constructor(
+    val identity: Identity,
+    val name: String,
+    val privateKey: ECKey,
+    val isUniqueIdentity: Boolean = true
+) {
+    enum class Status {
+        REGISTERED,
+        UNAVAILABLE, // the name is already registered or appears more than once
+        PREORDER_FAILED,
+        REGISTRATION_FAILED
+    }
+
+    /**
+     * The outcome of a [NameRegistration]
+     *
+     * @property document the domain document if [status] is [Status.REGISTERED]
+     * @property error the reason for a failed preorder or registration
+     */
+    class Result(
+        val registration: NameRegistration,
+        val status: Status,
+        val document: Document? = null,
+        val error: Exception? = null
+    ) {
+        override fun toString(): String {
+            return "${registration.name}: $status${error?.let { " ($it)" } ?: ""}"
+        }
+    }
+}
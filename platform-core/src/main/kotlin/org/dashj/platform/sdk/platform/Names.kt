@@ -7,6 +7,7 @@
 package org.dashj.platform.sdk.platform
 
 import java.io.ByteArrayOutputStream
+import java.util.IdentityHashMap
 import org.bitcoinj.core.ECKey
 import org.bitcoinj.core.Sha256Hash
 import org.dashj.platform.dapiclient.model.DocumentQuery
@@ -28,6 +29,28 @@ class Names(val platform: Platform) {
         const val DPNS_DOMAIN_DOCUMENT = "dpns.domain"
         const val DPNS_PREORDER_DOCUMENT = "dpns.preorder"
 
+        // with DPP 0.22 and the dpns contract, normalizedParentDomainName must be
+        // before normalizedLabel in the where clauses
+        val NAME_QUERY = QueryTemplate.builder()
+            .where("normalizedParentDomainName", "==", QueryTemplate.PARAM)
+            .where("normalizedLabel", "==", QueryTemplate.PARAM)
+            .build()
+
+        /** the most documents in a preorder or domain transition made by [registerAll] */
+        const val REGISTRATION_BATCH_SIZE = 10
+
+        /** the default number of identities that [registerAll] registers at the same time */
+        const val DEFAULT_REGISTRATION_PARALLELISM = 4
+
+        /** the most results that [searchIncremental] requests for a prefix */
+        const val INCREMENTAL_SEARCH_LIMIT = 500
+
+        /** the default of [filterRefreshMillis] */
+        const val DEFAULT_FILTER_REFRESH_MILLIS = 60 * 1000L
+
+        /** the default of [filterMaxAgeMillis] */
+        const val DEFAULT_FILTER_MAX_AGE_MILLIS = 24 * 60 * 60 * 1000L
+
         fun isUniqueIdentity(domainDocument: Document): Boolean {
             val records = domainDocument.data["records"] as Map<String, Any>
             return records.containsKey("dashUniqueIdentityId")
@@ -39,6 +62,44 @@ class Names(val platform: Platform) {
         }
     }
 
+    /**
+     * when not null, lookups by name and by identity are answered from this cache, see [NameCache].
+     * Cached results may be out of date by as much as its time to live.
+     */
+    var cache: NameCache? = null
+
+    /**
+     * when not null, lookups on fields that Platform does not index, such as [getByUserIdAlias],
+     * are answered from this index
+     */
+    var index: DpnsIndex? = null
+
+    /**
+     * when not null, [isAvailable] answers locally for names that are definitely not registered.
+     * See [buildFilter]
+     */
+    var filter: NameFilter? = null
+
+    /**
+     * how often [isAvailable] adds the names registered since the last refresh to [filter],
+     * see [NameFilter.refresh]
+     */
+    var filterRefreshMillis = DEFAULT_FILTER_REFRESH_MILLIS
+
+    /**
+     * the age of [filter] after which [isAvailable] rebuilds it rather than refreshing it,
+     * which also resizes it for the names registered since it was built
+     */
+    var filterMaxAgeMillis = DEFAULT_FILTER_MAX_AGE_MILLIS
+
+    private val filterLock = Any()
+
+    private val preorderType by lazy { platform.documents.prepare(DPNS_PREORDER_DOCUMENT) }
+    private val domainType by lazy { platform.documents.prepare(DPNS_DOMAIN_DOCUMENT) }
+
+    /** caches the results of [searchIncremental] */
+    val searchCache = PrefixSearchCache<Document> { it.data["normalizedLabel"] as String }
+
     fun register(
         name: String,
         identity: Identity,
@@ -74,6 +135,8 @@ class Names(val platform: Platform) {
 
         return try {
             platform.broadcastStateTransition(preorderTransition)
+            // an availability check may have cached that this name does not exist
+            cache?.invalidateName(normalizedLabel, normalizedParentDomainName)
             preorderDocument
         } catch (x: Exception) {
             null
@@ -87,12 +150,7 @@ class Names(val platform: Platform) {
         val map = HashMap<String, Any?>(1)
         map["saltedDomainHash"] = saltedDomainHash.bytes; // .bytes.toBase64()
 
-        val preorderDocument = platform.documents.create(
-            DPNS_PREORDER_DOCUMENT,
-            identity.id,
-            map
-        )
-        return preorderDocument
+        return preorderType.create(identity.id, map)
     }
 
     fun normalizedNames(name: String): Pair<String, String> {
@@ -149,10 +207,116 @@ class Names(val platform: Platform) {
         log.info("domainTransition: ${domainTransition.toJSON()}")
 
         platform.broadcastStateTransition(domainTransition)
+        onRegistered(domainDocument, identity)
 
         return domainDocument
     }
 
+    private fun onRegistered(domainDocument: Document, identity: Identity) {
+        val domain = DomainDocument(domainDocument)
+        cache?.invalidateName(domain.normalizedLabel, domain.normalizedParentDomainName)
+        cache?.invalidateOwner(identity.id)
+        searchCache.invalidate(domain.normalizedParentDomainName, domain.normalizedLabel)
+        index?.add(domainDocument)
+        filter?.add(domain.normalizedLabel, domain.normalizedParentDomainName)
+    }
+
+    /**
+     * Registers many names for many identities.  Unlike [register], which makes two transitions
+     * for each name, the names of each identity are preordered in one transition and then
+     * registered in one transition (up to [REGISTRATION_BATCH_SIZE] names per transition).
+     * Identities are registered concurrently on [Platform.executor].
+     *
+     * Names that are already registered, or that appear more than once, are not preordered.
+     * Set [filter] to avoid a query for each name that is not registered.
+     * A failed transition fails every name in it, but not the names of other identities.
+     *
+     * @param parallelism the maximum number of identities to register at the same time
+     * @param onResult called with the result of each name as soon as it is known
+     * @return the result for each registration, in the same order as [registrations]
+     */
+    @JvmOverloads
+    fun registerAll(
+        registrations: List<NameRegistration>,
+        parallelism: Int = DEFAULT_REGISTRATION_PARALLELISM,
+        onResult: ((NameRegistration.Result) -> Unit)? = null
+    ): List<NameRegistration.Result> {
+        require(parallelism > 0) { "parallelism must be positive: $parallelism" }
+        if (platform.apps["dpns"] == null) {
+            throw Error("DPNS is required to register a new name.")
+        }
+        val results = IdentityHashMap<NameRegistration, NameRegistration.Result>()
+        val report = { result: NameRegistration.Result ->
+            synchronized(results) { results[result.registration] = result }
+            onResult?.invoke(result)
+        }
+
+        // duplicates are reported without a transition
+        val seen = hashSetOf<String>()
+        val pending = registrations.filter { registration ->
+            val (normalizedParentDomainName, normalizedLabel) = normalizedNames(registration.name)
+            val unique = seen.add(NameCache.nameKey(normalizedLabel, normalizedParentDomainName))
+            if (!unique) {
+                report(NameRegistration.Result(registration, NameRegistration.Status.UNAVAILABLE))
+            }
+            unique
+        }
+
+        val batches = pending.groupBy { Pair(it.identity.id, it.privateKey) }.values
+            .flatMap { it.chunked(REGISTRATION_BATCH_SIZE) }
+        // the number of batches in flight is limited by the number of workers, rather than by
+        // tasks that wait for a permit while holding a thread of the pool
+        platform.executor.fanOutMap(batches, parallelism) { batch ->
+            val available = batch.filter { registration ->
+                val (normalizedParentDomainName, normalizedLabel) = normalizedNames(registration.name)
+                isAvailable(normalizedLabel, normalizedParentDomainName).also {
+                    if (!it) report(NameRegistration.Result(registration, NameRegistration.Status.UNAVAILABLE))
+                }
+            }
+            if (available.isNotEmpty()) {
+                registerBatch(available).forEach(report)
+            }
+        }
+        return registrations.map { results.getValue(it) }
+    }
+
+    /**
+     * Preorders and then registers names that belong to one identity with one transition each
+     */
+    private fun registerBatch(batch: List<NameRegistration>): List<NameRegistration.Result> {
+        val identity = batch.first().identity
+        val privateKey = batch.first().privateKey
+        val salts = batch.map { Entropy.generate() }
+
+        try {
+            val preorderDocuments = batch.mapIndexed { i, registration ->
+                val (normalizedParentDomainName, normalizedLabel) = normalizedNames(registration.name)
+                val saltedDomainHash = getSaltedDomainHash(salts[i], "$normalizedLabel.$normalizedParentDomainName")
+                createPreorderDocument(saltedDomainHash, identity)
+            }
+            val preorderTransition = platform.dpp.document.createStateTransition(hashMapOf("create" to preorderDocuments))
+            platform.broadcastStateTransition(preorderTransition, identity, privateKey, 0)
+        } catch (e: Exception) {
+            log.warn("preorder of ${batch.size} names for ${identity.id} failed: $e")
+            return batch.map { NameRegistration.Result(it, NameRegistration.Status.PREORDER_FAILED, error = e) }
+        }
+
+        val domainDocuments = batch.mapIndexed { i, registration ->
+            createDomainDocument(identity, registration.name, salts[i], registration.isUniqueIdentity)
+        }
+        return try {
+            val domainTransition = platform.dpp.document.createStateTransition(hashMapOf("create" to domainDocuments))
+            platform.broadcastStateTransition(domainTransition, identity, privateKey, 1)
+            batch.mapIndexed { i, registration ->
+                onRegistered(domainDocuments[i], identity)
+                NameRegistration.Result(registration, NameRegistration.Status.REGISTERED, domainDocuments[i])
+            }
+        } catch (e: Exception) {
+            log.warn("registration of ${batch.size} names for ${identity.id} failed: $e")
+            batch.map { NameRegistration.Result(it, NameRegistration.Status.REGISTRATION_FAILED, error = e) }
+        }
+    }
+
     fun createDomainDocument(
         identity: Identity,
         name: String,
@@ -183,21 +347,11 @@ class Names(val platform: Platform) {
         fields["subdomainRules"] = subdomainRules
 
         // 3. Create domain document
-        val domainDocument = platform.documents.create(
-            DPNS_DOMAIN_DOCUMENT,
-            identity.id,
-            fields
-        )
-        return domainDocument
+        return domainType.create(identity.id, fields)
     }
 
     private fun getDocumentQuery(name: String, parentDomain: String = DEFAULT_PARENT_DOMAIN): DocumentQuery {
-        // with DPP 0.22 and the dpns contract, normalizedParentDomainName must be
-        // before normalizedLabel in the where clauses
-        return DocumentQuery.Builder()
-            .where("normalizedParentDomainName", "==", parentDomain)
-            .where("normalizedLabel", "==", name.toLowerCase())
-            .build()
+        return NAME_QUERY.bind(parentDomain, name.toLowerCase())
     }
 
     /**
@@ -230,9 +384,88 @@ class Names(val platform: Platform) {
         return get(name, parentDomain, MulticallQuery.Companion.CallType.FIRST)
     }
 
+    /**
+     * Gets the document for the given name if it exists.  If [cache] is set, results are cached
+     * unless [callType] requires more than one node to agree, which always queries the network.
+     */
     fun get(name: String, parentDomain: String, callType: MulticallQuery.Companion.CallType = MulticallQuery.Companion.CallType.FIRST): Document? {
+        if (callType == MulticallQuery.Companion.CallType.FIRST) {
+            cache?.getName(name.toLowerCase(), parentDomain)?.let { return it.value }
+        }
         val documents = platform.documents.get(DPNS_DOMAIN_DOCUMENT, getDocumentQuery(name, parentDomain), callType)
-        return if (documents.isNotEmpty()) documents[0] else null
+        val document = if (documents.isNotEmpty()) documents[0] else null
+        cache?.putName(name.toLowerCase(), parentDomain, document)
+        document?.let { filter?.add(it) }
+        return document
+    }
+
+    /**
+     * Determines if a name can be registered.  If [filter] is set, then names that are definitely
+     * not registered are answered without a query and only possible matches are looked up.
+     * The filter is refreshed first if it is older than [filterRefreshMillis].
+     */
+    @JvmOverloads
+    fun isAvailable(name: String, parentDomain: String = DEFAULT_PARENT_DOMAIN): Boolean {
+        val normalizedLabel = name.toLowerCase()
+        currentFilter()?.let {
+            if (!it.mightContain(normalizedLabel, parentDomain.toLowerCase())) {
+                return true
+            }
+        }
+        return get(normalizedLabel, parentDomain) == null
+    }
+
+    // [filter] after it is rebuilt or refreshed if it is older than filterMaxAgeMillis or
+    // filterRefreshMillis.  A filter that cannot be refreshed is not used
+    private fun currentFilter(): NameFilter? {
+        val current = filter ?: return null
+        val now = System.currentTimeMillis()
+        if (now - current.refreshedAt < filterRefreshMillis && now - current.createdAt < filterMaxAgeMillis) {
+            return current
+        }
+        return try {
+            synchronized(filterLock) {
+                val latest = filter ?: return null
+                when {
+                    now - latest.createdAt >= filterMaxAgeMillis -> buildFilter(latest.falsePositiveRate)
+                    now - latest.refreshedAt >= filterRefreshMillis -> latest.also { it.refresh(platform) }
+                    else -> latest
+                }
+            }
+        } catch (e: Exception) {
+            log.warn("cannot refresh the name filter, names will be looked up: ${e.message}")
+            null
+        }
+    }
+
+    /**
+     * @return the domain documents where $createdAt > [createdAt], one page at a time
+     */
+    internal fun getCreatedAfter(createdAt: Long): List<Document> {
+        val result = arrayListOf<Document>()
+        var startAfter: Identifier? = null
+        do {
+            val query = DocumentQuery.builder()
+                .where("\$createdAt", ">", createdAt)
+                .orderBy("\$createdAt", true)
+                .limit(Documents.DOCUMENT_LIMIT)
+            startAfter?.let { query.startAfter(it) }
+            val page = platform.documents.get(DPNS_DOMAIN_DOCUMENT, query.build())
+            result.addAll(page)
+            startAfter = page.lastOrNull()?.id
+        } while (page.size == Documents.DOCUMENT_LIMIT)
+        return result
+    }
+
+    /**
+     * Builds [filter] from all registered names, see [NameFilter.build].  [isAvailable] keeps
+     * it up to date, see [filterRefreshMillis] and [filterMaxAgeMillis]
+     */
+    @JvmOverloads
+    fun buildFilter(falsePositiveRate: Double = NameFilter.DEFAULT_FALSE_POSITIVE_RATE): NameFilter {
+        val newFilter = NameFilter.build(platform, falsePositiveRate)
+        filter = newFilter
+        return newFilter
     }
 
     /**
@@ -257,6 +490,30 @@ class Names(val platform: Platform) {
         return platform.documents.getAll(DPNS_DOMAIN_DOCUMENT, documentQuery.build())
     }
 
+    /**
+     * Searches for names that start with [text] like [search], but answers locally when a previous
+     * search for a shorter prefix returned all of its matches.  This is intended for autocomplete,
+     * where each keystroke extends the previous prefix.
+     *
+     * At most [INCREMENTAL_SEARCH_LIMIT] results are obtained for a prefix.  A prefix with more
+     * matches than that is queried again when it is extended.
+     *
+     * @param limit the number of items to return (-1 for all that were obtained)
+     * @return List<Documents> ordered by normalized label
+     */
+    fun searchIncremental(text: String, parentDomain: String = DEFAULT_PARENT_DOMAIN, limit: Int = -1): List<Document> {
+        val prefix = text.toLowerCase()
+        val results = searchCache.find(parentDomain, prefix) ?: run {
+            val documents = search(prefix, parentDomain, false, INCREMENTAL_SEARCH_LIMIT + 1)
+            val complete = documents.size <= INCREMENTAL_SEARCH_LIMIT
+            val kept = documents.take(INCREMENTAL_SEARCH_LIMIT)
+            searchCache.put(parentDomain, prefix, kept, complete)
+            kept.forEach { cache?.putDomain(it) }
+            searchCache.find(parentDomain, prefix)!!
+        }
+        return if (limit == -1) results else results.take(limit)
+    }
+
     /**
      * Gets all of the usernames associated with userId
      */
@@ -270,18 +527,23 @@ class Names(val platform: Platform) {
     }
 
     fun getByOwnerId(ownerId: Identifier): List<Document> {
-        return resolveByRecord("dashUniqueIdentityId", ownerId)
+        cache?.getOwner(ownerId)?.let { return it.value }
+        val documents = resolveByRecord("dashUniqueIdentityId", ownerId)
+        cache?.putOwner(ownerId, documents)
+        return documents
     }
 
     /**
      * Gets all of the alias usernames associated with userId
      */
     fun getByUserIdAlias(ownerId: Identifier): List<Document> {
+        index?.let { return it.getByAliasIdentityId(ownerId) }
         return try {
             // this method returns an error
             // Query by not indexed field \"records.dashAliasIdentityId\" is not allowed"
             resolveByRecord("dashAliasIdentityId", ownerId)
         } catch (e: Exception) {
+            log.warn("alias lookup is not supported by Platform, set Names.index to enable it: ${e.message}")
             arrayListOf()
         }
     }
@@ -303,46 +565,37 @@ class Names(val platform: Platform) {
         return results
     }
 
-    // TODO: getList/getListHelper can be refactored into Documents
     /**
-     * Gets all of the unique usernames associated with a list of userId's
+     * Gets all of the unique usernames associated with a list of userId's.  If [cache] is set,
+     * only the userId's that are not cached are queried and the results are in the order of
+     * [userIds].
      */
-
     fun getList(
         userIds: List<Identifier>
     ): List<Document> {
-        var startAt = 0
-        val documents = ArrayList<Document>()
-
-        while (startAt < userIds.size) {
-            val subsetSize = if (startAt + Documents.DOCUMENT_LIMIT > userIds.size) {
-                userIds.size - startAt
+        val nameCache = cache ?: return platform.documents.getByIn(DPNS_DOMAIN_DOCUMENT, "records.dashUniqueIdentityId", userIds)
+
+        val byOwner = hashMapOf<Identifier, List<Document>>()
+        val missing = arrayListOf<Identifier>()
+        val distinctIds = userIds.distinct()
+        distinctIds.forEach { userId ->
+            val cached = nameCache.getOwner(userId)
+            if (cached != null) {
+                byOwner[userId] = cached.value
             } else {
-                Documents.DOCUMENT_LIMIT
+                missing.add(userId)
             }
-            val userIdSubSet = userIds.subList(startAt, startAt + subsetSize)
-            val documentSubset = getListHelper(userIdSubSet)
-            documents.addAll(documentSubset)
-            startAt += subsetSize
         }
 
-        return documents
-    }
-
-    /**
-     * obtains the domain documents for the associated identities
-     *
-     * @param userIds A list of identity ids that must be limited to 100 in size
-     */
-    private fun getListHelper(
-        userIds: List<Identifier>
-    ): List<Document> {
-        val documentQuery = DocumentQuery.Builder()
-        documentQuery.whereIn("records.dashUniqueIdentityId", userIds)
-            .orderBy("records.dashUniqueIdentityId", true)
-
-        val documents = platform.documents.get(DPNS_DOMAIN_DOCUMENT, documentQuery.build())
-
-        return documents
+        if (missing.isNotEmpty()) {
+            val fetched = platform.documents.getByIn(DPNS_DOMAIN_DOCUMENT, "records.dashUniqueIdentityId", missing)
+                .groupBy { DomainDocument(it).dashUniqueIdentityId }
+            missing.forEach {
+                val documents = fetched[it] ?: listOf()
+                nameCache.putOwner(it, documents)
+                byOwner[it] = documents
+            }
+        }
+        return distinctIds.flatMap { byOwner.getValue(it) }
     }
 }
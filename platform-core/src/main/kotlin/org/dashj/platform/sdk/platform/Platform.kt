@@ -9,6 +9,7 @@ package org.dashj.platform.sdk.platform
 import com.google.common.base.Stopwatch
 import io.grpc.Status
 import io.grpc.StatusRuntimeException
+import java.io.File
 import kotlin.collections.HashMap
 import org.bitcoinj.core.ECKey
 import org.bitcoinj.core.NetworkParameters
@@ -31,6 +32,9 @@ import org.dashj.platform.dpp.statetransition.StateTransitionIdentitySigned
 import org.dashj.platform.dpp.util.Entropy
 import org.dashj.platform.sdk.client.ClientAppDefinition
 import org.dashj.platform.sdk.platform.multicall.MulticallException
+import org.dashj.platform.sdk.platform.trace.DapiTrace
+import org.dashj.platform.sdk.platform.trace.DapiTraceRecorder
+import org.dashj.platform.sdk.platform.trace.DapiTraceReplayer
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
@@ -50,6 +54,20 @@ class Platform(val params: NetworkParameters) {
     var names = Names(this)
     lateinit var client: DapiClient
     private var useWhiteList = false
+
+    /** runs the blocking calls of the async APIs and fan out requests, threads are created on demand */
+    var executor = PlatformExecutor()
+
+    /** when not null, DAPI requests and responses are written to a trace */
+    var traceRecorder: DapiTraceRecorder? = null
+        private set
+
+    /** when not null, DAPI responses are served from a trace instead of the network */
+    var traceReplayer: DapiTraceReplayer? = null
+        private set
+
+    val isTracing: Boolean
+        get() = traceRecorder != null || traceReplayer != null
     val documentsRetryCallback = object : DefaultGetDocumentsWithContractIdRetryCallback(apps.map { it.value.contractId }) {
         override val retryContractIds
             get() = getAppList() // always use the latest app list
@@ -104,7 +122,57 @@ class Platform(val params: NetworkParameters) {
 
     fun broadcastStateTransition(signedStateTransition: StateTransitionIdentitySigned) {
         // TODO: validate transition structure here
-        client.broadcastStateTransitionAndWait(signedStateTransition, retryCallback = broadcastRetryCallback, verifyProof = MerkLibVerifyProof(signedStateTransition))
+        val traceRecorder = traceRecorder
+        traceReplayer?.let {
+            it.replay(DapiTrace.Kind.BROADCAST_STATE_TRANSITION, DapiTrace.broadcastRequest())
+            return
+        }
+        val started = System.nanoTime()
+        try {
+            client.broadcastStateTransitionAndWait(signedStateTransition, retryCallback = broadcastRetryCallback, verifyProof = MerkLibVerifyProof(signedStateTransition))
+            traceRecorder?.record(DapiTrace.Kind.BROADCAST_STATE_TRANSITION, DapiTrace.broadcastRequest(), started, listOf())
+        } catch (e: Exception) {
+            traceRecorder?.recordError(DapiTrace.Kind.BROADCAST_STATE_TRANSITION, DapiTrace.broadcastRequest(), started, e)
+            throw e
+        }
+    }
+
+    /**
+     * Starts recording all DAPI requests made through this object, along with their
+     * responses and timings, to a trace file
+     *
+     * @param file File the trace file to create
+     */
+    fun startRecording(file: File) {
+        check(traceReplayer == null) { "cannot record while replaying a trace" }
+        stopRecording()
+        traceRecorder = DapiTraceRecorder(file)
+        log.info("recording DAPI traffic to $file")
+    }
+
+    fun stopRecording() {
+        traceRecorder?.close()
+        traceRecorder = null
+    }
+
+    /**
+     * Serve all DAPI requests from a trace file created by [startRecording] instead of the network
+     *
+     * @param file File the trace file
+     * @param speed Double 1.0 to replay with the original latencies, higher values to accelerate, 0.0 for no delays
+     */
+    fun startReplay(file: File, speed: Double = 1.0) {
+        startReplay(DapiTraceReplayer(file, speed))
+    }
+
+    fun startReplay(replayer: DapiTraceReplayer) {
+        check(traceRecorder == null) { "cannot replay while recording a trace" }
+        traceReplayer = replayer
+        log.info("replaying DAPI traffic from a trace with ${replayer.entries.size} entries")
+    }
+
+    fun stopReplay() {
+        traceReplayer = null
     }
 
     fun hasApp(appName: String): Boolean {
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform
+
+import java.io.Closeable
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import org.dashj.platform.sdk.client.ExecutionMode
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * Runs blocking SDK calls, such as [Documents.get] and [Platform.broadcastStateTransition],
+ * on either a bounded pool of platform threads or on virtual threads
+ *
+ * Virtual threads are only available on Java 21 or later, so they are obtained by reflection
+ * and [ExecutionMode.PLATFORM_THREADS] is used when they are not available.
+ *
+ * @param requestedMode the mode that was requested
+ * @param maxThreads the size of the pool when platform threads are used
+ */
+class PlatformExecutor @JvmOverloads constructor(
+    val requestedMode: ExecutionMode = ExecutionMode.PLATFORM_THREADS,
+    val maxThreads: Int = DEFAULT_MAX_THREADS
+) : Closeable {
+
+    companion object {
+        const val DEFAULT_MAX_THREADS = 16
+        private val log: Logger = LoggerFactory.getLogger(PlatformExecutor::class.java)
+
+        /** the executor that owns the current thread if it is a pool thread */
+        private val currentExecutor = ThreadLocal<PlatformExecutor>()
+
+        /** @return an executor that starts a virtual thread for each task or null if not supported */
+        fun createVirtualThreadExecutor(): ExecutorService? {
+            return try {
+                Executors::class.java.getMethod("newVirtualThreadPerTaskExecutor").invoke(null) as ExecutorService
+            } catch (e: NoSuchMethodException) {
+                null
+            } catch (e: Exception) {
+                // on Java 19 and 20 virtual threads are a preview feature
+                log.info("virtual threads are not available: $e")
+                null
+            }
+        }
+
+        /**
+         * @param onThreadStart called on each thread of the pool before it runs any task
+         */
+        @JvmOverloads
+        fun createThreadPool(maxThreads: Int, onThreadStart: () -> Unit = {}): ExecutorService {
+            val count = AtomicInteger()
+            return Executors.newFixedThreadPool(
+                maxThreads,
+                ThreadFactory { runnable ->
+                    val start = Runnable {
+                        onThreadStart()
+                        runnable.run()
+                    }
+                    Thread(start, "platform-executor-${count.incrementAndGet()}").apply { isDaemon = true }
+                }
+            )
+        }
+    }
+
+    val executorService: ExecutorService
+    val mode: ExecutionMode
+
+    init {
+        require(maxThreads > 0) { "maxThreads must be positive: $maxThreads" }
+        val virtualThreadExecutor = if (requestedMode == ExecutionMode.VIRTUAL_THREADS) createVirtualThreadExecutor() else null
+        if (virtualThreadExecutor != null) {
+            executorService = virtualThreadExecutor
+            mode = ExecutionMode.VIRTUAL_THREADS
+        } else {
+            if (requestedMode == ExecutionMode.VIRTUAL_THREADS) {
+                log.info("virtual threads are not supported by this JVM, using $maxThreads platform threads")
+            }
+            executorService = createThreadPool(maxThreads) { currentExecutor.set(this) }
+            mode = ExecutionMode.PLATFORM_THREADS
+        }
+    }
+
+    /** true if the current thread is one of the platform threads of this executor */
+    val isPoolThread: Boolean
+        get() = mode == ExecutionMode.PLATFORM_THREADS && currentExecutor.get() === this
+
+    fun <T> submit(task: Callable<T>): Future<T> {
+        return executorService.submit(task)
+    }
+
+    /**
+     * Runs all of the tasks concurrently and waits for them to complete
+     *
+     * If any task fails, the remaining tasks are cancelled and the exception is thrown. If the
+     * calling thread is interrupted, all tasks are cancelled.  No task will still be running
+     * when this method returns.
+     *
+     * When this is called from a task that is already running on the pool, such as a nested
+     * [Documents.getByIn], the tasks that have not been started by another pool thread are run
+     * on the calling thread.  Otherwise the calling task could wait for tasks that are queued
+     * behind other waiting tasks, which deadlocks the pool once all of its threads are waiting.
+     *
+     * @return the results in the same order as [tasks]
+     */
+    fun <T> fanOut(tasks: List<Callable<T>>): List<T> {
+        val futures = tasks.map { FutureTask(it) }
+        try {
+            futures.forEach { executorService.execute(it) }
+            if (isPoolThread) {
+                // a task that was already started is not run again
+                futures.forEach { it.run() }
+            }
+            return futures.map { it.get() }
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        } finally {
+            futures.forEach { it.cancel(true) }
+        }
+    }
+
+    /**
+     * Runs the tasks with at most [parallelism] of them running at the same time, see [fanOut]
+     *
+     * Rather than waiting for groups of tasks, each of the [parallelism] workers starts the next
+     * task as soon as its previous one completes, so that one slow task does not delay the others.
+     *
+     * @return the results in the same order as [tasks]
+     */
+    fun <T> fanOut(tasks: List<Callable<T>>, parallelism: Int): List<T> {
+        require(parallelism > 0) { "parallelism must be positive: $parallelism" }
+        if (parallelism >= tasks.size) {
+            return fanOut(tasks)
+        }
+        val results = arrayOfNulls<Any>(tasks.size)
+        val next = AtomicInteger()
+        val failed = AtomicBoolean()
+        val workers = List(parallelism) {
+            Callable {
+                var index = next.getAndIncrement()
+                while (index < tasks.size && !failed.get() && !Thread.currentThread().isInterrupted) {
+                    try {
+                        results[index] = tasks[index].call()
+                    } catch (e: Exception) {
+                        failed.set(true)
+                        throw e
+                    }
+                    index = next.getAndIncrement()
+                }
+            }
+        }
+        fanOut(workers)
+        @Suppress("UNCHECKED_CAST")
+        return results.toList() as List<T>
+    }
+
+    /**
+     * Runs [first] and [second] concurrently, see [fanOut]
+     */
+    fun <A, B> fanOut(first: Callable<A>, second: Callable<B>): Pair<A, B> {
+        val results = fanOut(listOf<Callable<Any?>>(Callable { first.call() }, Callable { second.call() }))
+        @Suppress("UNCHECKED_CAST")
+        return Pair(results[0] as A, results[1] as B)
+    }
+
+    /**
+     * Applies [transform] to each item concurrently, see [fanOut]
+     */
+    fun <T, R> fanOutMap(items: Collection<T>, transform: (T) -> R): List<R> {
+        return fanOut(items.map { Callable { transform(it) } })
+    }
+
+    /**
+     * Applies [transform] to each item with at most [parallelism] running at the same time
+     */
+    fun <T, R> fanOutMap(items: Collection<T>, parallelism: Int, transform: (T) -> R): List<R> {
+        return fanOut(items.map { Callable { transform(it) } }, parallelism)
+    }
+
+    override fun close() {
+        executorService.shutdown()
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform
+
+/**
+ * Keeps the results of recent prefix searches so that a search for a longer prefix can be
+ * answered locally, as happens with autocomplete where each keystroke extends the prefix.
+ *
+ * The results for a prefix are kept sorted by label.  If they were complete (all matches were
+ * returned), then the results for any longer prefix are a contiguous range of them, which is
+ * found with a binary search.
+ *
+ * @param labelOf returns the normalized label of an item
+ */
+class PrefixSearchCache<T> @JvmOverloads constructor(
+    val ttlMillis: Long = DEFAULT_TTL,
+    val maxEntries: Int = DEFAULT_MAX_ENTRIES,
+    private val clock: () -> Long = { System.currentTimeMillis() },
+    private val labelOf: (T) -> String
+) {
+    companion object {
+        const val DEFAULT_TTL = 60 * 1000L
+        const val DEFAULT_MAX_ENTRIES = 64
+    }
+
+    private class Entry<T>(val labels: Array<String>, val items: List<T>, val complete: Boolean, val expiresAt: Long)
+
+    // least recently used order
+    private val entries = object : LinkedHashMap<String, Entry<T>>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Entry<T>>?): Boolean {
+            return size > maxEntries
+        }
+    }
+
+    private fun key(domain: String, prefix: String) = "$domain/$prefix"
+
+    /**
+     * @return the items that start with [prefix] in label order, or null if they
+     * cannot be determined from previous results
+     */
+    @Synchronized
+    fun find(domain: String, prefix: String): List<T>? {
+        val now = clock()
+        for (length in prefix.length downTo 0) {
+            val key = key(domain, prefix.substring(0, length))
+            val entry = entries[key] ?: continue
+            if (entry.expiresAt <= now) {
+                entries.remove(key)
+                continue
+            }
+            if (length == prefix.length) {
+                return entry.items
+            }
+            if (entry.complete) {
+                val start = lowerBound(entry.labels, prefix)
+                val end = lowerBound(entry.labels, prefix + Char.MAX_VALUE)
+                return entry.items.subList(start, end)
+            }
+        }
+        return null
+    }
+
+    /**
+     * @param complete true if [items] are all of the matches for [prefix]
+     */
+    @Synchronized
+    fun put(domain: String, prefix: String, items: List<T>, complete: Boolean) {
+        val sorted = items.sortedBy(labelOf)
+        entries[key(domain, prefix)] = Entry(sorted.map(labelOf).toTypedArray(), sorted, complete, clock() + ttlMillis)
+    }
+
+    /**
+     * Removes the results that should include [label], such as after it has been registered
+     */
+    @Synchronized
+    fun invalidate(domain: String, label: String) {
+        for (length in 0..label.length) {
+            entries.remove(key(domain, label.substring(0, length)))
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+    }
+
+    // index of the first label that is not less than value
+    private fun lowerBound(labels: Array<String>, value: String): Int {
+        var low = 0
+        var high = labels.size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (labels[mid] < value) {
+                low = mid + 1
+            } else {
+                high = mid
+            }
+        }
+        return low
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform
+
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dpp.contract.DataContract
+import org.dashj.platform.dpp.document.Document
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.sdk.platform.multicall.MulticallQuery
+
+/**
+ * A document type whose data contract and schema have already been resolved, so that
+ * documents can be created and queried without parsing a type locator or looking up the
+ * contract each time.  Obtain one with [Documents.prepare].
+ *
+ * @property typeLocator the type in the form of "appname.document_type"
+ */
+class PreparedDocumentType(
+    val platform: Platform,
+    val typeLocator: String,
+    val dataContract: DataContract,
+    val documentType: String
+) {
+    init {
+        require(dataContract.isDocumentDefined(documentType)) {
+            "$documentType is not defined in contract ${dataContract.id}"
+        }
+    }
+
+    val dataContractId: Identifier = dataContract.id
+    val schema: Map<String, Any?> = dataContract.getDocumentSchema(documentType)
+
+    fun create(ownerId: Identifier, data: MutableMap<String, Any?>): Document {
+        return platform.dpp.document.create(dataContract, ownerId, documentType, data)
+    }
+
+    @JvmOverloads
+    fun get(query: DocumentQuery, callType: MulticallQuery.Companion.CallType = MulticallQuery.Companion.CallType.FIRST): List<Document> {
+        return platform.documents.get(dataContractId, documentType, query, callType)
+    }
+
+    override fun toString(): String {
+        return "$typeLocator ($dataContractId)"
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform
+
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dpp.identifier.Identifier
+
+/**
+ * A document query whose where and orderBy clauses are fixed, with [PARAM] slots for the values
+ * that change from one query to the next:
+ *
+ * <pre>
+ * val byOwner = QueryTemplate.builder().where("\$ownerId", "==", QueryTemplate.PARAM).build()
+ * val query = byOwner.bind(userId)
+ * </pre>
+ *
+ * The shape of each query is declared once and the slots are found when the template is built.
+ * Each call to [bind] still creates a new [DocumentQuery], which the DAPI client encodes when the
+ * request is made.
+ */
+class QueryTemplate private constructor(
+    val where: List<List<Any>>,
+    val orderBy: List<Pair<String, Boolean>>,
+    val limit: Int?
+) {
+    companion object {
+        /** a placeholder for a value that is given to [bind] */
+        @JvmField
+        val PARAM = Any()
+
+        @JvmStatic
+        fun builder(): Builder {
+            return Builder()
+        }
+    }
+
+    class Builder {
+        private val where = arrayListOf<List<Any>>()
+        private val orderBy = arrayListOf<Pair<String, Boolean>>()
+        private var limit: Int? = null
+
+        fun where(field: String, operator: String, value: Any) = apply { where.add(listOf(field, operator, value)) }
+        fun orderBy(field: String, ascending: Boolean = true) = apply { orderBy.add(Pair(field, ascending)) }
+        fun limit(limit: Int) = apply { this.limit = limit }
+
+        fun build(): QueryTemplate {
+            return QueryTemplate(where.toList(), orderBy.toList(), limit)
+        }
+    }
+
+    /** the indexes of the where clauses that have a [PARAM] value, in order */
+    private val slots = where.indices.filter { where[it][2] === PARAM }
+
+    val parameterCount: Int
+        get() = slots.size
+
+    private fun checkParameters(parameters: List<Any>) {
+        require(parameters.size == slots.size) { "expected ${slots.size} parameters, but got ${parameters.size}" }
+    }
+
+    fun bind(vararg parameters: Any): DocumentQuery {
+        return bind(parameters.toList())
+    }
+
+    /**
+     * Creates a query from this template with [parameters] in place of each [PARAM]
+     *
+     * @param limit overrides the limit of the template, if any
+     * @param startAfter the last document of the previous page
+     */
+    @JvmOverloads
+    fun bind(parameters: List<Any>, limit: Int? = this.limit, startAfter: Identifier? = null): DocumentQuery {
+        checkParameters(parameters)
+        val builder = DocumentQuery.Builder()
+        var next = 0
+        for (clause in where) {
+            val value = if (clause[2] === PARAM) parameters[next++] else clause[2]
+            builder.where(clause[0] as String, clause[1] as String, value)
+        }
+        orderBy.forEach { builder.orderBy(it.first, it.second) }
+        limit?.let { builder.limit(it) }
+        startAfter?.let { builder.startAfter(it) }
+        return builder.build()
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform.async
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
+import java.util.function.Supplier
+import org.bitcoinj.core.ECKey
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dpp.contract.DataContract
+import org.dashj.platform.dpp.document.Document
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.identity.Identity
+import org.dashj.platform.sdk.platform.Names
+import org.dashj.platform.sdk.platform.Platform
+
+/**
+ * [CompletableFuture] API for [Platform], intended for Java callers
+ *
+ * Each method performs the matching blocking call of [Platform] on [executor] and returns
+ * immediately.  The futures can be combined with thenCombine, allOf, etc. so that independent
+ * requests, such as the names, profiles and identities of a contact list, are made concurrently:
+ *
+ * <pre>
+ * AsyncPlatform async = new AsyncPlatform(platform);
+ * CompletableFuture&lt;List&lt;Document&gt;&gt; names = async.getNames(userIds);
+ * CompletableFuture&lt;Map&lt;Identifier, Identity&gt;&gt; identities = async.getIdentities(userIds);
+ * names.thenCombine(identities, (n, i) -&gt; ...);
+ * </pre>
+ *
+ * @param platform the platform used to make requests
+ * @param executor the executor that makes the blocking calls, which is [Platform.executor] by default
+ */
+class AsyncPlatform @JvmOverloads constructor(
+    val platform: Platform,
+    val executor: Executor = platform.executor.executorService
+) {
+
+    /**
+     * Runs [block] on [executor]
+     */
+    fun <T> supply(block: () -> T): CompletableFuture<T> {
+        return CompletableFuture.supplyAsync(Supplier { block() }, executor)
+    }
+
+    // Documents
+
+    fun getDocuments(typeLocator: String, query: DocumentQuery): CompletableFuture<List<Document>> = supply {
+        platform.documents.get(typeLocator, query)
+    }
+
+    fun getDocuments(dataContractId: Identifier, documentType: String, query: DocumentQuery): CompletableFuture<List<Document>> = supply {
+        platform.documents.get(dataContractId, documentType, query)
+    }
+
+    /**
+     * Obtains all documents that match [query], which may require more than one request
+     */
+    fun getAllDocuments(typeLocator: String, query: DocumentQuery): CompletableFuture<List<Document>> = supply {
+        platform.documents.getAll(typeLocator, query)
+    }
+
+    @JvmOverloads
+    fun broadcastDocuments(
+        identity: Identity,
+        privateKey: ECKey,
+        create: List<Document>?,
+        replace: List<Document>? = null,
+        delete: List<Document>? = null
+    ): CompletableFuture<Void?> = supply {
+        platform.documents.broadcast(identity, privateKey, create, replace, delete)
+        null
+    }
+
+    // Identities
+
+    fun getIdentity(id: Identifier): CompletableFuture<Identity?> = supply {
+        platform.identities.get(id)
+    }
+
+    fun getIdentityByPublicKeyHash(pubKeyHash: ByteArray): CompletableFuture<Identity?> = supply {
+        platform.identities.getByPublicKeyHash(pubKeyHash)
+    }
+
+    /**
+     * Requests all identities concurrently
+     *
+     * @return a future for a map of the identities that were found
+     */
+    fun getIdentities(ids: List<Identifier>): CompletableFuture<Map<Identifier, Identity>> {
+        val futures = ids.distinct().associateWith { getIdentity(it) }
+        return CompletableFuture.allOf(*futures.values.toTypedArray()).thenApply {
+            futures.mapNotNull { (id, future) -> future.join()?.let { id to it } }.toMap()
+        }
+    }
+
+    // Contracts
+
+    fun getContract(id: Identifier): CompletableFuture<DataContract?> = supply {
+        platform.contracts.get(id)
+    }
+
+    // Names
+
+    @JvmOverloads
+    fun getName(name: String, parentDomain: String = Names.DEFAULT_PARENT_DOMAIN): CompletableFuture<Document?> = supply {
+        platform.names.get(name, parentDomain)
+    }
+
+    fun resolveName(name: String): CompletableFuture<Document?> = supply {
+        platform.names.resolve(name)
+    }
+
+    fun getNamesByOwnerId(ownerId: Identifier): CompletableFuture<List<Document>> = supply {
+        platform.names.getByOwnerId(ownerId)
+    }
+
+    fun getNames(userIds: List<Identifier>): CompletableFuture<List<Document>> = supply {
+        platform.names.getList(userIds)
+    }
+
+    @JvmOverloads
+    fun searchNames(
+        text: String,
+        parentDomain: String = Names.DEFAULT_PARENT_DOMAIN,
+        retrieveAll: Boolean = true,
+        limit: Int = -1
+    ): CompletableFuture<List<Document>> = supply {
+        platform.names.search(text, parentDomain, retrieveAll, limit)
+    }
+}
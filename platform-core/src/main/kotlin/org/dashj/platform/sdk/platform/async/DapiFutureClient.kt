@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform.async
+
+import com.google.common.util.concurrent.FutureCallback
+import com.google.common.util.concurrent.Futures
+import com.google.common.util.concurrent.ListenableFuture
+import com.google.common.util.concurrent.MoreExecutors
+import com.google.common.util.concurrent.SettableFuture
+import com.google.protobuf.ByteString
+import io.grpc.ManagedChannel
+import io.grpc.ManagedChannelBuilder
+import io.grpc.Status
+import io.grpc.StatusRuntimeException
+import java.io.Closeable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import org.dash.platform.dapi.v0.PlatformGrpc
+import org.dash.platform.dapi.v0.PlatformOuterClass
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dpp.Factory
+import org.dashj.platform.dpp.document.Document
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.identity.Identity
+import org.dashj.platform.sdk.platform.Platform
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * Makes DAPI platform requests with the gRPC future stubs, so that no thread waits for a response
+ *
+ * Each request is sent to a live address of [Platform.client] and a channel is kept open for each
+ * address until [close] is called.  A request that fails because the node is unavailable or does
+ * not respond within [timeoutMillis] is sent to another address, up to [retries] times.
+ *
+ * Proofs are not requested, since the DAPI client only verifies proofs for its blocking calls, and
+ * requests are not written to or served from a trace.  Use the blocking calls of [Platform] where
+ * either is needed.
+ *
+ * @param platform the platform whose DAPI addresses and protocol are used
+ * @param timeoutMillis the deadline of each request
+ * @param retries the number of times a request is sent to another address
+ */
+class DapiFutureClient @JvmOverloads constructor(
+    val platform: Platform,
+    val timeoutMillis: Long = DEFAULT_TIMEOUT_MILLIS,
+    val retries: Int = DEFAULT_RETRIES
+) : Closeable {
+
+    companion object {
+        const val DEFAULT_TIMEOUT_MILLIS = 5000L
+        const val DEFAULT_RETRIES = 5
+        private val RETRY_CODES = setOf(Status.Code.UNAVAILABLE, Status.Code.DEADLINE_EXCEEDED)
+        private val log: Logger = LoggerFactory.getLogger(DapiFutureClient::class.java)
+    }
+
+    private val channels = ConcurrentHashMap<String, ManagedChannel>()
+
+    private fun stub(): PlatformGrpc.PlatformFutureStub {
+        val address = platform.client.dapiAddressListProvider.getLiveAddress()
+            ?: throw IllegalStateException("there are no live DAPI addresses")
+        val channel = channels.computeIfAbsent("${address.host}:${address.grpcServerPort}") {
+            ManagedChannelBuilder.forAddress(address.host, address.grpcServerPort).usePlaintext().build()
+        }
+        return PlatformGrpc.newFutureStub(channel).withDeadlineAfter(timeoutMillis, TimeUnit.MILLISECONDS)
+    }
+
+    /**
+     * Sends [request] and sends it again to another address if it fails with one of [RETRY_CODES].
+     * Cancelling the returned future cancels the request in flight.
+     */
+    private fun <R> call(request: (PlatformGrpc.PlatformFutureStub) -> ListenableFuture<R>): ListenableFuture<R> {
+        val result = SettableFuture.create<R>()
+
+        fun attempt(retriesLeft: Int) {
+            val future = try {
+                request(stub())
+            } catch (e: Exception) {
+                result.setException(e)
+                return
+            }
+            result.addListener({ if (result.isCancelled) future.cancel(true) }, MoreExecutors.directExecutor())
+            Futures.addCallback(
+                future,
+                object : FutureCallback<R> {
+                    override fun onSuccess(response: R?) {
+                        result.set(response)
+                    }
+
+                    override fun onFailure(t: Throwable) {
+                        if (retriesLeft > 0 && !result.isCancelled && t is StatusRuntimeException && t.status.code in RETRY_CODES) {
+                            log.info("retrying request after ${t.status.code}, $retriesLeft retries left")
+                            attempt(retriesLeft - 1)
+                        } else {
+                            result.setException(t)
+                        }
+                    }
+                },
+                MoreExecutors.directExecutor()
+            )
+        }
+
+        attempt(retries)
+        return result
+    }
+
+    // a response of NOT_FOUND is returned as null
+    private fun <T> orNullIfNotFound(future: ListenableFuture<T?>): ListenableFuture<T?> {
+        return Futures.catching(
+            future,
+            StatusRuntimeException::class.java,
+            { e -> if (e!!.status.code == Status.Code.NOT_FOUND) null else throw e },
+            MoreExecutors.directExecutor()
+        )
+    }
+
+    fun getDocuments(dataContractId: Identifier, documentType: String, query: DocumentQuery): ListenableFuture<List<Document>> {
+        val request = PlatformOuterClass.GetDocumentsRequest.newBuilder()
+            .setDataContractId(ByteString.copyFrom(dataContractId.toBuffer()))
+            .setDocumentType(documentType)
+            .setWhere(ByteString.copyFrom(query.encodeWhere()))
+            .setOrderBy(ByteString.copyFrom(query.encodeOrderBy()))
+            .setLimit(if (query.limit == -1) 0 else query.limit)
+            .setProve(false)
+        query.startAt?.let { request.setStartAt(ByteString.copyFrom(it.toBuffer())) }
+        query.startAfter?.let { request.setStartAfter(ByteString.copyFrom(it.toBuffer())) }
+
+        return Futures.transform(
+            call { it.getDocuments(request.build()) },
+            { response ->
+                response!!.documentsList.map { platform.dpp.document.createFromBuffer(it.toByteArray(), Factory.Options(true)) }
+            },
+            MoreExecutors.directExecutor()
+        )
+    }
+
+    fun getIdentity(id: Identifier): ListenableFuture<Identity?> {
+        val request = PlatformOuterClass.GetIdentityRequest.newBuilder()
+            .setId(ByteString.copyFrom(id.toBuffer()))
+            .setProve(false)
+            .build()
+
+        val identity = Futures.transform(
+            call { it.getIdentity(request) },
+            { response ->
+                val bytes = response!!.identity.toByteArray()
+                if (bytes.isEmpty()) null else platform.dpp.identity.createFromBuffer(bytes)
+            },
+            MoreExecutors.directExecutor()
+        )
+        return orNullIfNotFound(identity)
+    }
+
+    override fun close() {
+        channels.values.forEach { it.shutdown() }
+        channels.clear()
+    }
+}
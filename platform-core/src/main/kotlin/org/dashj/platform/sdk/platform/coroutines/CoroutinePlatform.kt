@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform.coroutines
+
+import com.google.common.util.concurrent.ListenableFuture
+import com.google.common.util.concurrent.MoreExecutors
+import com.google.common.util.concurrent.Uninterruptibles
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ExecutionException
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.withContext
+import org.bitcoinj.core.ECKey
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dpp.contract.DataContract
+import org.dashj.platform.dpp.document.Document
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.identity.Identity
+import org.dashj.platform.sdk.platform.Documents
+import org.dashj.platform.sdk.platform.Names
+import org.dashj.platform.sdk.platform.Platform
+import org.dashj.platform.sdk.platform.async.DapiFutureClient
+
+/**
+ * Coroutine API for [Platform]
+ *
+ * Results that may span more than one page are returned as a [Flow] that requests the next page
+ * only when it is collected.
+ *
+ * When [futureClient] is set, documents and identities are requested with the gRPC future stubs and
+ * the coroutine is suspended until the response arrives, so no thread is occupied while a request is
+ * in flight and a single dispatcher thread can keep hundreds of requests in flight.  These requests
+ * are made without proofs and are not traced, see [DapiFutureClient], so while tracing they are
+ * made with the blocking calls instead.
+ *
+ * The other suspend functions, and all of them when [futureClient] is null, perform the matching
+ * blocking call of [Platform] on [dispatcher], so that the calling thread (such as the Android main
+ * thread) is never blocked, but each request in flight occupies one thread of the dispatcher.
+ * [Platform.executor] is not used by default, since some of these calls, such as [getNames], fan
+ * out on [Platform.executor] themselves.
+ *
+ * @param platform the platform used to make requests
+ * @param dispatcher the dispatcher on which the blocking calls are made
+ * @param futureClient makes non-blocking requests for documents and identities, if not null
+ */
+class CoroutinePlatform(
+    val platform: Platform,
+    val dispatcher: CoroutineDispatcher = Dispatchers.IO,
+    val futureClient: DapiFutureClient? = null
+) {
+
+    private suspend fun <T> blocking(block: () -> T): T {
+        return withContext(dispatcher) { block() }
+    }
+
+    // resumes when the future completes, without blocking a thread; cancelling the coroutine
+    // cancels the future
+    private suspend fun <T> ListenableFuture<T>.await(): T = suspendCancellableCoroutine { continuation ->
+        addListener(
+            {
+                try {
+                    continuation.resume(Uninterruptibles.getUninterruptibly(this))
+                } catch (e: ExecutionException) {
+                    continuation.resumeWithException(e.cause ?: e)
+                } catch (e: CancellationException) {
+                    continuation.cancel(e)
+                }
+            },
+            MoreExecutors.directExecutor()
+        )
+        continuation.invokeOnCancellation { cancel(true) }
+    }
+
+    // the future client, unless requests must be traced
+    private val nonBlockingClient: DapiFutureClient?
+        get() = if (platform.isTracing) null else futureClient
+
+    // Documents
+
+    suspend fun getDocuments(typeLocator: String, query: DocumentQuery): List<Document> {
+        val (dataContractId, documentType) = platform.getDataContractIdAndType(typeLocator)
+            ?: return blocking { platform.documents.get(typeLocator, query) }
+        return getDocuments(dataContractId, documentType, query)
+    }
+
+    suspend fun getDocuments(dataContractId: Identifier, documentType: String, query: DocumentQuery): List<Document> {
+        val client = nonBlockingClient ?: return blocking { platform.documents.get(dataContractId, documentType, query) }
+        return client.getDocuments(dataContractId, documentType, query).await()
+    }
+
+    /**
+     * Emits every document that matches [query], one page at a time.  If the query has a limit
+     * of -1 or more than [Documents.DOCUMENT_LIMIT], then pages are requested until the limit
+     * is reached or there are no more results.
+     */
+    fun getDocumentsFlow(typeLocator: String, query: DocumentQuery): Flow<Document> = flow {
+        val pageQuery = query.clone()
+        val limit = query.limit
+        pageQuery.limit = if (limit == -1 || limit > Documents.DOCUMENT_LIMIT) Documents.DOCUMENT_LIMIT else limit
+        var emitted = 0
+        var lastId: Identifier? = null
+
+        while (limit == -1 || emitted < limit) {
+            val page = getDocuments(typeLocator, pageQuery)
+            // startAt is inclusive, so the last item of the previous page is returned again
+            val newDocuments = if (lastId != null && page.isNotEmpty() && page.first().id == lastId) page.drop(1) else page
+            for (document in newDocuments) {
+                if (limit != -1 && emitted == limit) {
+                    break
+                }
+                emit(document)
+                emitted++
+            }
+            if (page.size < pageQuery.limit || newDocuments.isEmpty()) {
+                break
+            }
+            lastId = page.last().id
+            pageQuery.startAt = lastId
+        }
+    }.flowOn(dispatcher)
+
+    suspend fun broadcastDocuments(
+        identity: Identity,
+        privateKey: ECKey,
+        create: List<Document>?,
+        replace: List<Document>? = null,
+        delete: List<Document>? = null
+    ) = blocking {
+        platform.documents.broadcast(identity, privateKey, create, replace, delete)
+    }
+
+    // Identities
+
+    suspend fun getIdentity(id: Identifier): Identity? {
+        val client = nonBlockingClient ?: return blocking { platform.identities.get(id) }
+        return client.getIdentity(id).await()
+    }
+
+    suspend fun getIdentityByPublicKeyHash(pubKeyHash: ByteArray): Identity? = blocking {
+        platform.identities.getByPublicKeyHash(pubKeyHash)
+    }
+
+    /**
+     * Requests all identities concurrently
+     *
+     * @return a map of the identities that were found
+     */
+    suspend fun getIdentities(ids: List<Identifier>): Map<Identifier, Identity> = coroutineScope {
+        ids.distinct()
+            .map { id -> async { id to getIdentity(id) } }
+            .awaitAll()
+            .mapNotNull { (id, identity) -> identity?.let { id to it } }
+            .toMap()
+    }
+
+    // Contracts
+
+    suspend fun getContract(id: Identifier): DataContract? = blocking {
+        platform.contracts.get(id)
+    }
+
+    // Names
+
+    suspend fun getName(name: String, parentDomain: String = Names.DEFAULT_PARENT_DOMAIN): Document? = blocking {
+        platform.names.get(name, parentDomain)
+    }
+
+    suspend fun resolveName(name: String): Document? = blocking {
+        platform.names.resolve(name)
+    }
+
+    suspend fun getNamesByOwnerId(ownerId: Identifier): List<Document> = blocking {
+        platform.names.getByOwnerId(ownerId)
+    }
+
+    suspend fun getNames(userIds: List<Identifier>): List<Document> = blocking {
+        platform.names.getList(userIds)
+    }
+
+    /**
+     * Emits the names that start with [text], in order
+     */
+    fun searchNames(text: String, parentDomain: String = Names.DEFAULT_PARENT_DOMAIN, limit: Int = -1): Flow<Document> {
+        val query = DocumentQuery.Builder()
+            .where("normalizedParentDomainName", "==", parentDomain)
+            .where("normalizedLabel", "startsWith", text.toLowerCase())
+            .orderBy("normalizedLabel", true)
+            .limit(limit)
+            .build()
+        return getDocumentsFlow(Names.DPNS_DOMAIN_DOCUMENT, query)
+    }
+}
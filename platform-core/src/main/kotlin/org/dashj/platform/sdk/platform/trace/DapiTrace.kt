@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform.trace
+
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.util.Cbor
+
+/**
+ * Definitions shared by [DapiTraceRecorder] and [DapiTraceReplayer]
+ *
+ * A trace file is a gzip compressed stream with this layout:
+ *
+ * header: magic (4 bytes "DAPT"), version (1 byte), start time in ms since epoch (8 bytes)
+ * entry:  kind (1 byte), status (1 byte), start offset in µs (varint), duration in µs (varint),
+ *         request length (varint), request bytes, payload count (varint), [payload length (varint), payload bytes]...
+ *
+ * For [Status.ERROR] entries, the only payload is the UTF-8 encoded error message.
+ */
+object DapiTrace {
+    val MAGIC = byteArrayOf('D'.toByte(), 'A'.toByte(), 'P'.toByte(), 'T'.toByte())
+    const val VERSION = 1
+
+    enum class Kind(val code: Int) {
+        GET_DOCUMENTS(1),
+        GET_IDENTITY(2),
+        GET_IDENTITY_BY_PUBLIC_KEY_HASH(3),
+        GET_DATA_CONTRACT(4),
+        BROADCAST_STATE_TRANSITION(5);
+
+        companion object {
+            private val values = values()
+            fun getByCode(code: Int): Kind {
+                return values.find { it.code == code }
+                    ?: throw DapiTraceException("invalid trace entry kind: $code")
+            }
+        }
+    }
+
+    enum class Status(val code: Int) {
+        OK(0),
+        NOT_FOUND(1),
+        ERROR(2);
+
+        companion object {
+            private val values = values()
+            fun getByCode(code: Int): Status {
+                return values.find { it.code == code }
+                    ?: throw DapiTraceException("invalid trace entry status: $code")
+            }
+        }
+    }
+
+    /**
+     * A single request/response pair
+     *
+     * @property startOffsetMicros when the request was made, relative to the start of the recording
+     * @property durationMicros how long the request took to complete
+     * @property payloads the raw response buffers (documents, identity, contract) as returned by DAPI
+     */
+    class Entry(
+        val kind: Kind,
+        val status: Status,
+        val startOffsetMicros: Long,
+        val durationMicros: Long,
+        val request: ByteArray,
+        val payloads: List<ByteArray>
+    ) {
+        val errorMessage: String?
+            get() = if (status == Status.ERROR && payloads.isNotEmpty()) String(payloads[0], Charsets.UTF_8) else null
+
+        fun write(output: DataOutputStream) {
+            output.writeByte(kind.code)
+            output.writeByte(status.code)
+            writeVarInt(output, startOffsetMicros)
+            writeVarInt(output, durationMicros)
+            writeBytes(output, request)
+            writeVarInt(output, payloads.size.toLong())
+            payloads.forEach { writeBytes(output, it) }
+        }
+
+        companion object {
+            /** @return the next entry or null at the end of the stream */
+            fun read(input: DataInputStream): Entry? {
+                val kindCode = input.read()
+                if (kindCode == -1) {
+                    return null
+                }
+                val kind = Kind.getByCode(kindCode)
+                val status = Status.getByCode(input.readUnsignedByte())
+                val startOffset = readVarInt(input)
+                val duration = readVarInt(input)
+                val request = readBytes(input)
+                val count = readVarInt(input).toInt()
+                val payloads = ArrayList<ByteArray>(count)
+                for (i in 0 until count) {
+                    payloads.add(readBytes(input))
+                }
+                return Entry(kind, status, startOffset, duration, request, payloads)
+            }
+        }
+    }
+
+    // request keys: these identify a request so that the replayer can match it with a response
+
+    fun documentsRequest(dataContractId: Identifier, documentType: String, query: DocumentQuery): ByteArray {
+        val stream = ByteArrayOutputStream()
+        stream.write(dataContractId.toBuffer())
+        stream.write(documentType.toByteArray())
+        stream.write(0)
+        stream.write(Cbor.encode(query.toJSON()))
+        return stream.toByteArray()
+    }
+
+    fun identityRequest(id: Identifier): ByteArray {
+        return id.toBuffer()
+    }
+
+    fun publicKeyHashRequest(pubKeyHash: ByteArray): ByteArray {
+        return pubKeyHash
+    }
+
+    fun dataContractRequest(id: Identifier): ByteArray {
+        return id.toBuffer()
+    }
+
+    /**
+     * State transitions contain timestamps, entropy and signatures and will never be identical
+     * between runs, so all broadcasts share a single key and are replayed in the order recorded
+     */
+    fun broadcastRequest(): ByteArray {
+        return ByteArray(0)
+    }
+
+    private fun writeBytes(output: DataOutputStream, bytes: ByteArray) {
+        writeVarInt(output, bytes.size.toLong())
+        output.write(bytes)
+    }
+
+    private fun readBytes(input: DataInputStream): ByteArray {
+        val bytes = ByteArray(readVarInt(input).toInt())
+        input.readFully(bytes)
+        return bytes
+    }
+
+    // unsigned LEB128
+    private fun writeVarInt(output: DataOutputStream, value: Long) {
+        var remaining = value
+        while (remaining and 0x7fL.inv() != 0L) {
+            output.writeByte(((remaining and 0x7f) or 0x80).toInt())
+            remaining = remaining ushr 7
+        }
+        output.writeByte(remaining.toInt())
+    }
+
+    private fun readVarInt(input: DataInputStream): Long {
+        var result = 0L
+        var shift = 0
+        while (shift < 64) {
+            val b = input.read()
+            if (b == -1) {
+                throw EOFException("truncated trace entry")
+            }
+            result = result or ((b and 0x7f).toLong() shl shift)
+            if (b and 0x80 == 0) {
+                return result
+            }
+            shift += 7
+        }
+        throw DapiTraceException("malformed varint in trace")
+    }
+}
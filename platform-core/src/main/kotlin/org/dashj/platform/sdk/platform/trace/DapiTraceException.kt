@@ -0,0 +1,6 @@
+package org.dashj.platform.sdk.platform.trace
+
+open class DapiTraceException(message: String) : Exception(message)
+
+/** thrown by [DapiTraceReplayer.replay] for a request that is not in the trace */
+class DapiTraceNotRecordedException(message: String) : DapiTraceException(message)
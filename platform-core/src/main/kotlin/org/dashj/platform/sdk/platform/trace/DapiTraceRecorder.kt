@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform.trace
+
+import java.io.BufferedOutputStream
+import java.io.Closeable
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.OutputStream
+import java.util.concurrent.TimeUnit
+import java.util.zip.GZIPOutputStream
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * Captures DAPI request/response pairs along with their timings to a trace file
+ * that can later be served by [DapiTraceReplayer]
+ *
+ * Enable with [org.dashj.platform.sdk.platform.Platform.startRecording]
+ */
+class DapiTraceRecorder(outputStream: OutputStream) : Closeable {
+
+    constructor(file: File) : this(FileOutputStream(file))
+
+    companion object {
+        private val log: Logger = LoggerFactory.getLogger(DapiTraceRecorder::class.java)
+    }
+
+    private val output = DataOutputStream(BufferedOutputStream(GZIPOutputStream(outputStream)))
+    private val startNanos = System.nanoTime()
+    private var closed = false
+
+    var entryCount = 0
+        private set
+
+    init {
+        output.write(DapiTrace.MAGIC)
+        output.writeByte(DapiTrace.VERSION)
+        output.writeLong(System.currentTimeMillis())
+    }
+
+    /**
+     * Records a successful request
+     *
+     * @param startedNanos the value of [System.nanoTime] when the request was started
+     */
+    fun record(kind: DapiTrace.Kind, request: ByteArray, startedNanos: Long, payloads: List<ByteArray>) {
+        write(kind, DapiTrace.Status.OK, request, startedNanos, payloads)
+    }
+
+    fun recordNotFound(kind: DapiTrace.Kind, request: ByteArray, startedNanos: Long) {
+        write(kind, DapiTrace.Status.NOT_FOUND, request, startedNanos, listOf())
+    }
+
+    fun recordError(kind: DapiTrace.Kind, request: ByteArray, startedNanos: Long, e: Exception) {
+        val message = (e.message ?: e.javaClass.simpleName).toByteArray(Charsets.UTF_8)
+        write(kind, DapiTrace.Status.ERROR, request, startedNanos, listOf(message))
+    }
+
+    private fun write(
+        kind: DapiTrace.Kind,
+        status: DapiTrace.Status,
+        request: ByteArray,
+        startedNanos: Long,
+        payloads: List<ByteArray>
+    ) {
+        val now = System.nanoTime()
+        val entry = DapiTrace.Entry(
+            kind,
+            status,
+            TimeUnit.NANOSECONDS.toMicros(startedNanos - startNanos),
+            TimeUnit.NANOSECONDS.toMicros(now - startedNanos),
+            request,
+            payloads
+        )
+        synchronized(this) {
+            if (closed) {
+                return
+            }
+            try {
+                entry.write(output)
+                entryCount++
+            } catch (e: Exception) {
+                // recording must never break the request that is being recorded
+                log.warn("unable to record trace entry: $e")
+            }
+        }
+    }
+
+    @Synchronized
+    override fun close() {
+        if (!closed) {
+            closed = true
+            output.close()
+            log.info("trace recording complete: $entryCount entries")
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.sdk.platform.trace
+
+import java.io.BufferedInputStream
+import java.io.DataInputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.zip.GZIPInputStream
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * Serves responses from a trace created by [DapiTraceRecorder] in place of the network
+ *
+ * When the same request was recorded more than once, the responses are returned in the order
+ * that they were recorded and then repeat from the beginning.
+ *
+ * @property speed 1.0 replays each response with its original latency, 2.0 at twice the speed, etc.
+ *                 0.0 returns responses without any delay
+ */
+class DapiTraceReplayer(inputStream: InputStream, val speed: Double = 1.0) {
+
+    constructor(file: File, speed: Double = 1.0) : this(FileInputStream(file), speed)
+
+    companion object {
+        private val log: Logger = LoggerFactory.getLogger(DapiTraceReplayer::class.java)
+    }
+
+    private data class Key(val kind: DapiTrace.Kind, val request: ByteBuffer)
+
+    private class Responses {
+        val entries = arrayListOf<DapiTrace.Entry>()
+        val next = AtomicInteger()
+
+        fun take(): DapiTrace.Entry {
+            return entries[Math.floorMod(next.getAndIncrement(), entries.size)]
+        }
+    }
+
+    private val responses = hashMapOf<Key, Responses>()
+
+    /** all entries in the order that they were recorded */
+    val entries = arrayListOf<DapiTrace.Entry>()
+
+    /** the time that the recording was started in ms since epoch */
+    val recordedAt: Long
+
+    init {
+        require(speed >= 0.0) { "speed must not be negative: $speed" }
+        DataInputStream(BufferedInputStream(GZIPInputStream(inputStream))).use { input ->
+            val magic = ByteArray(DapiTrace.MAGIC.size)
+            input.readFully(magic)
+            if (!magic.contentEquals(DapiTrace.MAGIC)) {
+                throw DapiTraceException("not a DAPI trace file")
+            }
+            val version = input.readUnsignedByte()
+            if (version != DapiTrace.VERSION) {
+                throw DapiTraceException("unsupported trace version: $version")
+            }
+            recordedAt = input.readLong()
+
+            var entry = DapiTrace.Entry.read(input)
+            while (entry != null) {
+                entries.add(entry)
+                responses.getOrPut(Key(entry.kind, ByteBuffer.wrap(entry.request))) { Responses() }.entries.add(entry)
+                entry = DapiTrace.Entry.read(input)
+            }
+        }
+        log.info("loaded trace with ${entries.size} entries and ${responses.size} unique requests")
+    }
+
+    fun hasResponse(kind: DapiTrace.Kind, request: ByteArray): Boolean {
+        return responses.containsKey(Key(kind, ByteBuffer.wrap(request)))
+    }
+
+    /**
+     * Obtains the recorded response for a request, waiting for the recorded latency adjusted by [speed]
+     *
+     * @return the entry whose status is either [DapiTrace.Status.OK] or [DapiTrace.Status.NOT_FOUND]
+     * @throws DapiTraceNotRecordedException if the request was not recorded
+     * @throws DapiTraceException if the request failed when it was recorded
+     */
+    fun replay(kind: DapiTrace.Kind, request: ByteArray): DapiTrace.Entry {
+        val recorded = responses[Key(kind, ByteBuffer.wrap(request))]
+            ?: throw DapiTraceNotRecordedException("no recorded response for $kind request")
+        val entry = recorded.take()
+
+        if (speed > 0.0 && entry.durationMicros > 0) {
+            val delayMicros = (entry.durationMicros / speed).toLong()
+            TimeUnit.MICROSECONDS.sleep(delayMicros)
+        }
+
+        if (entry.status == DapiTrace.Status.ERROR) {
+            throw DapiTraceException("replayed error for $kind request: ${entry.errorMessage}")
+        }
+        return entry
+    }
+}
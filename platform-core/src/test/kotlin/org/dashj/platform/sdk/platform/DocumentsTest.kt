@@ -41,6 +41,20 @@ class DocumentsTest : PlatformNetwork() {
         assertEquals(saltedDomainHash, document.data["saltedDomainHash"])
     }
 
+    @Test
+    fun prepareTest() {
+        val preorderType = platform.documents.prepare(Names.DPNS_PREORDER_DOCUMENT)
+        assertTrue(preorderType === platform.documents.prepare(Names.DPNS_PREORDER_DOCUMENT))
+        assertEquals("preorder", preorderType.documentType)
+        assertEquals(platform.apps["dpns"]!!.contractId, preorderType.dataContractId)
+
+        val saltedDomainHash = Sha256Hash.wrap(Entropy.generate())
+        val ownerId = Identifier.from("46ez8VqoDbR8NkdXwFaf9Tp8ukBdQxN8eYs8JNMnUyK9")
+        val document = preorderType.create(ownerId, hashMapOf<String, Any?>("saltedDomainHash" to saltedDomainHash))
+        assertEquals(saltedDomainHash, document.data["saltedDomainHash"])
+        assertEquals(ownerId, document.ownerId)
+    }
+
     @Test
     fun getTest() {
         println("Make a query for domain documents")
@@ -83,4 +97,30 @@ class DocumentsTest : PlatformNetwork() {
         )
         assertEquals(results, listOf<ByteArray>())
     }
+
+    @Test
+    fun getByInTest() {
+        val domains = platform.documents.getAll(Names.DPNS_DOMAIN_DOCUMENT, DocumentQuery.builder().limit(250).build())
+        val ids = domains.mapNotNull { DomainDocument(it).dashUniqueIdentityId }.distinct()
+
+        val sequential = platform.documents.getByIn(Names.DPNS_DOMAIN_DOCUMENT, "records.dashUniqueIdentityId", ids, parallelism = 1)
+        val parallel = platform.documents.getByIn(Names.DPNS_DOMAIN_DOCUMENT, "records.dashUniqueIdentityId", ids + ids.take(10))
+
+        assertEquals(sequential.map { it.id }, parallel.map { it.id })
+        assertEquals(parallel.size, parallel.map { it.id }.toSet().size)
+        assertTrue(parallel.map { DomainDocument(it).dashUniqueIdentityId }.toSet().containsAll(ids))
+    }
+
+    @Test
+    fun nestedGetByInTest() {
+        val domains = platform.documents.getAll(Names.DPNS_DOMAIN_DOCUMENT, DocumentQuery.builder().limit(250).build())
+        val ids = domains.mapNotNull { DomainDocument(it).dashUniqueIdentityId }.distinct()
+        val expected = platform.documents.getByIn(Names.DPNS_DOMAIN_DOCUMENT, "records.dashUniqueIdentityId", ids, parallelism = 1)
+
+        // more concurrent callers than pool threads, each fanning out again on the same pool
+        val results = platform.executor.fanOutMap((1..PlatformExecutor.DEFAULT_MAX_THREADS * 2).toList()) {
+            platform.documents.getByIn(Names.DPNS_DOMAIN_DOCUMENT, "records.dashUniqueIdentityId", ids)
+        }
+        results.forEach { result -> assertEquals(expected.map { it.id }, result.map { it.id }) }
+    }
 }
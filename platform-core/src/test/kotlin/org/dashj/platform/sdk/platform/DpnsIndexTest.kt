@@ -0,0 +1,71 @@
+package org.dashj.platform.sdk.platform
+
+import java.io.File
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.sdk.platform.trace.DapiTrace
+import org.dashj.platform.sdk.platform.trace.DapiTraceReplayer
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class DpnsIndexTest : PlatformNetwork() {
+
+    @Test
+    fun addAndPersistTest() {
+        val domains = platform.documents.get(Names.DPNS_DOMAIN_DOCUMENT, DocumentQuery.builder().limit(100).build())
+        val index = DpnsIndex(platform)
+        domains.forEach { index.add(it) }
+        assertEquals(domains.size, index.size)
+
+        val domain = DomainDocument(domains.first())
+        assertEquals(domains.first(), index.getByName(domain.normalizedLabel, domain.normalizedParentDomainName))
+        assertTrue(index.getByOwnerId(domain.ownerId).contains(domains.first()))
+        domain.dashUniqueIdentityId?.let { assertTrue(index.getByUniqueIdentityId(it).contains(domains.first())) }
+
+        val file = File.createTempFile("dpns", ".index")
+        try {
+            index.save(file)
+            val loaded = DpnsIndex(platform)
+            loaded.load(file)
+            assertEquals(index.size, loaded.size)
+            assertEquals(index.labels(), loaded.labels())
+        } finally {
+            file.delete()
+        }
+
+        platform.names.index = index
+        domains.mapNotNull { DomainDocument(it).dashAliasIdentityId }.forEach {
+            assertTrue(platform.names.getByUserIdAlias(it).isNotEmpty())
+        }
+    }
+
+    @Test
+    fun deltaSyncTest() {
+        val index = DpnsIndex(platform, overlapMillis = 0)
+        val size = index.sync()
+        assertTrue(index.latestCreatedAt > 0)
+
+        // later syncs only request the domains created after the newest one
+        val traceFile = File.createTempFile("dpns", ".trace")
+        val indexFile = File.createTempFile("dpns", ".index")
+        try {
+            platform.startRecording(traceFile)
+            try {
+                assertEquals(size, index.sync())
+            } finally {
+                platform.stopRecording()
+            }
+            assertEquals(1, DapiTraceReplayer(traceFile, 0.0).entries.count { it.kind == DapiTrace.Kind.GET_DOCUMENTS })
+
+            // a loaded index catches up with the domains registered since it was saved
+            index.save(indexFile)
+            val loaded = DpnsIndex(platform)
+            loaded.load(indexFile)
+            assertTrue(loaded.size >= size)
+            assertTrue(loaded.syncedAt > index.syncedAt)
+        } finally {
+            traceFile.delete()
+            indexFile.delete()
+        }
+    }
+}
@@ -8,9 +8,11 @@ import org.bitcoinj.wallet.DeterministicSeed
 import org.bitcoinj.wallet.KeyChainGroup
 import org.bitcoinj.wallet.Wallet
 import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dpp.identifier.Identifier
 import org.dashj.platform.dpp.statetransition.StateTransitionFactory
 import org.dashj.platform.dpp.toHex
 import org.dashj.platform.dpp.util.Converters
+import org.dashj.platform.dpp.util.Entropy
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Test
 
@@ -29,6 +31,18 @@ class IdentitiesTest : PlatformNetwork() {
         }
     }
 
+    @Test
+    fun getListTest() {
+        val results = platform.documents.get(Names.DPNS_DOMAIN_DOCUMENT, DocumentQuery.builder().limit(5).build())
+        val ids = results.map { DomainDocument(it) }.map { it.dashUniqueIdentityId ?: it.dashAliasIdentityId!! }
+        val missingId = Identifier.from(Entropy.generate())
+
+        val identities = platform.identities.getList(ids + ids + missingId)
+
+        assertEquals(ids.toSet(), identities.keys)
+        identities.forEach { (id, identity) -> assertEquals(id, identity.id) }
+    }
+
     @Test
     fun getIdentitiesTest() {
         val pubKeyHash = wallet.blockchainIdentityKeyChain.getKey(0, true).pubKeyHash
@@ -0,0 +1,57 @@
+package org.dashj.platform.sdk.platform
+
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.util.Entropy
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+
+class NameCacheTest {
+
+    private var now = 1000L
+    private val cache = NameCache(positiveTtlMillis = 10000, negativeTtlMillis = 100, maxEntries = 3) { now }
+
+    @Test
+    fun negativeTtlTest() {
+        assertNull(cache.getName("alice", "dash"))
+
+        cache.putName("Alice", "dash", null)
+        val entry = cache.getName("alice", "DASH")
+        assertNotNull(entry)
+        assertNull(entry!!.value)
+
+        now += 100
+        assertNull(cache.getName("alice", "dash"))
+    }
+
+    @Test
+    fun ownerTest() {
+        val owner = Identifier.from(Entropy.generate())
+        cache.putOwner(owner, listOf())
+        assertEquals(0, cache.getOwner(owner)!!.value.size)
+
+        cache.invalidateOwner(owner)
+        assertNull(cache.getOwner(owner))
+
+        cache.putOwner(owner, listOf())
+        now += 100
+        assertNull(cache.getOwner(owner))
+    }
+
+    @Test
+    fun invalidateAndLimitTest() {
+        cache.putName("alice", "dash", null)
+        cache.invalidateName("alice", "dash")
+        assertNull(cache.getName("alice", "dash"))
+
+        for (name in listOf("a", "b", "c", "d", "e")) {
+            cache.putName(name, "dash", null)
+        }
+        assertNotNull(cache.getName("e", "dash"))
+        assertEquals(3, listOf("a", "b", "c", "d", "e").count { cache.getName(it, "dash") != null })
+
+        cache.clear()
+        assertNull(cache.getName("e", "dash"))
+    }
+}
@@ -0,0 +1,41 @@
+package org.dashj.platform.sdk.platform
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class NameFilterTest {
+
+    @Test
+    fun noFalseNegativesTest() {
+        val filter = NameFilter(10000)
+        for (i in 0 until 10000) {
+            filter.add("name-$i")
+        }
+        assertEquals(10000, filter.count)
+        for (i in 0 until 10000) {
+            assertTrue(filter.mightContain("name-$i"))
+        }
+    }
+
+    @Test
+    fun falsePositiveRateTest() {
+        val filter = NameFilter(10000, 0.01)
+        for (i in 0 until 10000) {
+            filter.add("name-$i")
+        }
+        val falsePositives = (0 until 100000).count { filter.mightContain("other-$it") }
+        assertTrue(falsePositives < 2000, "false positives: $falsePositives")
+        assertTrue(filter.currentFalsePositiveRate < 0.02)
+    }
+
+    @Test
+    fun parentDomainTest() {
+        val filter = NameFilter(100)
+        filter.add("alice", "dash")
+        assertTrue(filter.mightContain("alice", "dash"))
+        assertTrue(filter.mightContain("ALICE", "dash"))
+        assertFalse(filter.mightContain("alice", "other"))
+    }
+}
@@ -1,7 +1,16 @@
 package org.dashj.platform.sdk.platform
 
+import java.io.File
+import java.util.Collections
+import org.bitcoinj.core.ECKey
+import org.dashj.platform.dapiclient.model.DocumentQuery
 import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.toHex
+import org.dashj.platform.dpp.util.Entropy
+import org.dashj.platform.sdk.platform.trace.DapiTrace
+import org.dashj.platform.sdk.platform.trace.DapiTraceReplayer
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 
@@ -41,6 +50,60 @@ class NamesTest : PlatformNetwork() {
         }
     }
 
+    @Test
+    fun getListCacheTest() {
+        val ids = platform.names.search("x-hash", Names.DEFAULT_PARENT_DOMAIN, retrieveAll = false, limit = 10)
+            .map { DomainDocument(it).dashUniqueIdentityId!! }
+            .distinct()
+
+        try {
+            platform.names.cache = NameCache()
+            // cache every other identity, the results are still in the order requested
+            platform.names.getList(ids.filterIndexed { i, _ -> i % 2 == 0 })
+            val byGetList = platform.names.getList(ids.reversed())
+            assertEquals(ids.reversed(), byGetList.map { DomainDocument(it).dashUniqueIdentityId!! }.distinct())
+        } finally {
+            platform.names.cache = null
+        }
+    }
+
+    @Test
+    fun registerAllTest() {
+        val domains = platform.names.search("x-hash", Names.DEFAULT_PARENT_DOMAIN, retrieveAll = false, limit = 2)
+            .map { DomainDocument(it) }
+        val identities = domains.map { platform.identities.get(it.dashUniqueIdentityId!!)!! }
+        // without the private keys of these identities, each preorder fails
+        val keys = identities.map { ECKey() }
+        val newName = { "registerall-" + Entropy.generateRandomBytes(6).toHex() }
+
+        val duplicate = newName()
+        val registrations = listOf(
+            NameRegistration(identities[0], newName(), keys[0]),
+            NameRegistration(identities[0], domains[1].label, keys[0]),
+            NameRegistration(identities[1], duplicate, keys[1]),
+            NameRegistration(identities[0], duplicate, keys[0]),
+            NameRegistration(identities[1], newName(), keys[1])
+        )
+        val reported = Collections.synchronizedList(arrayListOf<NameRegistration.Result>())
+        val results = platform.names.registerAll(registrations, parallelism = 1) { reported.add(it) }
+
+        // the results are in the order of the registrations, whatever order they completed in
+        assertEquals(registrations, results.map { it.registration })
+        assertEquals(
+            listOf(
+                NameRegistration.Status.PREORDER_FAILED,
+                NameRegistration.Status.UNAVAILABLE,
+                NameRegistration.Status.PREORDER_FAILED,
+                NameRegistration.Status.UNAVAILABLE,
+                NameRegistration.Status.PREORDER_FAILED
+            ),
+            results.map { it.status }
+        )
+        // each identity's batch fails with the error of its own transition
+        assertTrue(results.filter { it.status == NameRegistration.Status.PREORDER_FAILED }.all { it.error != null })
+        assertEquals(registrations.size, reported.size)
+    }
+
     @Test
     fun domainTest() {
         val fullName = "username.dash"
@@ -170,4 +233,47 @@ class NamesTest : PlatformNetwork() {
         }
         assertTrue(list.size == userIds.size)
     }
+
+    @Test
+    fun searchIncrementalTest() {
+        val file = File.createTempFile("search", ".trace")
+        file.deleteOnExit()
+        platform.startRecording(file)
+        val results = try {
+            platform.names.searchIncremental("a")
+        } finally {
+            platform.stopRecording()
+        }
+
+        // a short prefix only requests enough pages for INCREMENTAL_SEARCH_LIMIT + 1 names
+        val pages = Names.INCREMENTAL_SEARCH_LIMIT / Documents.DOCUMENT_LIMIT + 1
+        assertTrue(results.size <= Names.INCREMENTAL_SEARCH_LIMIT)
+        assertTrue(DapiTraceReplayer(file, 0.0).entries.count { it.kind == DapiTrace.Kind.GET_DOCUMENTS } <= pages)
+        assertEquals(results, platform.names.searchIncremental("a"))
+    }
+
+    @Test
+    fun filterRefreshTest() {
+        val domains = platform.documents.getAll(Names.DPNS_DOMAIN_DOCUMENT, DocumentQuery.builder().limit(-1).build())
+            .sortedBy { it.createdAt ?: 0L }
+        val newest = domains.takeLast(5).map { DomainDocument(it) }
+        val filter = NameFilter.fromDocuments(domains.dropLast(5))
+
+        // the names registered after the filter was built are added by a refresh
+        assertTrue(filter.refresh(platform, 0L) <= newest.size)
+        for (domain in newest) {
+            assertTrue(filter.mightContain(domain.normalizedLabel, domain.normalizedParentDomainName))
+        }
+
+        // a filter that is too old is rebuilt
+        try {
+            platform.names.filter = filter
+            platform.names.filterMaxAgeMillis = 0L
+            platform.names.isAvailable(newest.last().label)
+            assertNotSame(filter, platform.names.filter)
+        } finally {
+            platform.names.filter = null
+            platform.names.filterMaxAgeMillis = Names.DEFAULT_FILTER_MAX_AGE_MILLIS
+        }
+    }
 }
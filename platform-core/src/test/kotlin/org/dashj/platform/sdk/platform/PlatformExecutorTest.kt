@@ -0,0 +1,115 @@
+package org.dashj.platform.sdk.platform
+
+import java.util.Collections
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import org.dashj.platform.sdk.client.ExecutionMode
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class PlatformExecutorTest {
+
+    @Test
+    fun fanOutTest() {
+        PlatformExecutor(ExecutionMode.PLATFORM_THREADS, 4).use { executor ->
+            val results = executor.fanOutMap((1..20).toList()) { it * it }
+            assertEquals((1..20).map { it * it }, results)
+
+            val (first, second) = executor.fanOut(Callable { "a" }, Callable { 1 })
+            assertEquals("a", first)
+            assertEquals(1, second)
+        }
+    }
+
+    @Test
+    fun fanOutFailureCancelsTest() {
+        PlatformExecutor(ExecutionMode.PLATFORM_THREADS, 4).use { executor ->
+            val started = CountDownLatch(1)
+            val interrupted = AtomicBoolean(false)
+            val finished = CountDownLatch(1)
+
+            assertThrows<IllegalStateException> {
+                executor.fanOut(
+                    listOf(
+                        Callable {
+                            started.await()
+                            throw IllegalStateException("failed")
+                        },
+                        Callable {
+                            try {
+                                started.countDown()
+                                Thread.sleep(10000)
+                            } catch (e: InterruptedException) {
+                                interrupted.set(true)
+                            } finally {
+                                finished.countDown()
+                            }
+                        }
+                    )
+                )
+            }
+            assertTrue(finished.await(5, TimeUnit.SECONDS))
+            assertTrue(interrupted.get())
+        }
+    }
+
+    @Test
+    fun fanOutParallelismTest() {
+        PlatformExecutor(ExecutionMode.PLATFORM_THREADS, 8).use { executor ->
+            val running = AtomicInteger()
+            val maxRunning = AtomicInteger()
+            val completed = Collections.synchronizedList(arrayListOf<Int>())
+
+            val results = executor.fanOutMap((0 until 10).toList(), 2) {
+                maxRunning.accumulateAndGet(running.incrementAndGet()) { a, b -> maxOf(a, b) }
+                Thread.sleep(if (it == 0) 300 else 10)
+                running.decrementAndGet()
+                completed.add(it)
+                it * it
+            }
+            assertEquals((0 until 10).map { it * it }, results)
+            assertEquals(2, maxRunning.get())
+            // the other tasks do not wait for the slow one
+            assertEquals(0, completed.last())
+
+            assertThrows<IllegalStateException> {
+                executor.fanOutMap((0 until 10).toList(), 3) { if (it == 4) throw IllegalStateException("failed") else it }
+            }
+        }
+    }
+
+    @Test
+    fun nestedFanOutTest() {
+        // every pool thread runs an outer task that waits on inner tasks queued behind the others
+        PlatformExecutor(ExecutionMode.PLATFORM_THREADS, 2).use { executor ->
+            val outer = executor.submit(
+                Callable {
+                    executor.fanOutMap((1..8).toList()) { i ->
+                        executor.fanOutMap((1..8).toList()) { j ->
+                            Thread.sleep(5)
+                            i * j
+                        }.sum()
+                    }
+                }
+            )
+            assertEquals((1..8).map { it * 36 }, outer.get(30, TimeUnit.SECONDS))
+            assertFalse(executor.isPoolThread)
+        }
+    }
+
+    @Test
+    fun virtualThreadFallbackTest() {
+        PlatformExecutor(ExecutionMode.VIRTUAL_THREADS, 2).use { executor ->
+            val virtualSupported = PlatformExecutor.createVirtualThreadExecutor()?.let { it.shutdown(); true } ?: false
+            val expected = if (virtualSupported) ExecutionMode.VIRTUAL_THREADS else ExecutionMode.PLATFORM_THREADS
+            assertEquals(expected, executor.mode)
+            assertEquals(listOf(1, 2, 3), executor.fanOutMap(listOf(1, 2, 3)) { it })
+        }
+    }
+}
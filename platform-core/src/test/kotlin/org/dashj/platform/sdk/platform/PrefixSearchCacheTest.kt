@@ -0,0 +1,48 @@
+package org.dashj.platform.sdk.platform
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+
+class PrefixSearchCacheTest {
+
+    private var now = 0L
+    private val cache = PrefixSearchCache<String>(ttlMillis = 1000, clock = { now }) { it }
+
+    @Test
+    fun completeResultsTest() {
+        cache.put("dash", "ab", listOf("abd", "ab", "abc", "abcd", "abz"), true)
+
+        assertEquals(listOf("ab", "abc", "abcd", "abd", "abz"), cache.find("dash", "ab"))
+        assertEquals(listOf("abc", "abcd"), cache.find("dash", "abc"))
+        assertEquals(listOf<String>(), cache.find("dash", "abe"))
+        assertNull(cache.find("dash", "a"))
+        assertNull(cache.find("other", "abc"))
+
+        now += 1000
+        assertNull(cache.find("dash", "abc"))
+    }
+
+    @Test
+    fun incompleteResultsTest() {
+        cache.put("dash", "a", listOf("aa", "ab"), false)
+
+        // the same prefix can be answered, but not a longer one
+        assertEquals(listOf("aa", "ab"), cache.find("dash", "a"))
+        assertNull(cache.find("dash", "ab"))
+
+        // the longest cached prefix is used
+        cache.put("dash", "", listOf("aa", "ab", "b"), true)
+        assertEquals(listOf("ab"), cache.find("dash", "ab"))
+    }
+
+    @Test
+    fun invalidateTest() {
+        cache.put("dash", "ab", listOf("abc"), true)
+        cache.put("dash", "x", listOf("xy"), true)
+        cache.invalidate("dash", "abd")
+
+        assertNull(cache.find("dash", "abd"))
+        assertEquals(listOf("xy"), cache.find("dash", "x"))
+    }
+}
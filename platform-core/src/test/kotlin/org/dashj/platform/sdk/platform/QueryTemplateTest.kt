@@ -0,0 +1,36 @@
+package org.dashj.platform.sdk.platform
+
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.util.Cbor
+import org.dashj.platform.dpp.util.Entropy
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class QueryTemplateTest {
+
+    private val template = QueryTemplate.builder()
+        .where("\$ownerId", "==", QueryTemplate.PARAM)
+        .where("\$createdAt", ">", QueryTemplate.PARAM)
+        .orderBy("\$createdAt", true)
+        .build()
+
+    @Test
+    fun bindTest() {
+        val ownerId = Identifier.from(Entropy.generate())
+        val expected = DocumentQuery.Builder()
+            .where("\$ownerId", "==", ownerId)
+            .where("\$createdAt", ">", 1000L)
+            .orderBy("\$createdAt", true)
+            .limit(100)
+            .build()
+
+        val query = template.bind(listOf(ownerId, 1000L), limit = 100)
+        assertEquals(2, template.parameterCount)
+        assertArrayEquals(Cbor.encode(expected.toJSON()), Cbor.encode(query.toJSON()))
+
+        assertThrows<IllegalArgumentException> { template.bind(ownerId) }
+    }
+}
@@ -0,0 +1,31 @@
+package org.dashj.platform.sdk.platform.async
+
+import org.dashj.platform.sdk.platform.DomainDocument
+import org.dashj.platform.sdk.platform.Names
+import org.dashj.platform.sdk.platform.PlatformNetwork
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+
+class AsyncPlatformTest : PlatformNetwork() {
+
+    private val asyncPlatform = AsyncPlatform(platform)
+
+    @Test
+    fun combineTest() {
+        val ids = platform.names.search("x-hash", Names.DEFAULT_PARENT_DOMAIN, retrieveAll = false, limit = 10)
+            .mapNotNull { DomainDocument(it).dashUniqueIdentityId }
+
+        val (names, identities) = asyncPlatform.getNames(ids)
+            .thenCombine(asyncPlatform.getIdentities(ids)) { names, identities -> Pair(names, identities) }
+            .join()
+
+        assertEquals(ids.size, names.size)
+        assertEquals(ids.toSet(), identities.keys)
+    }
+
+    @Test
+    fun getNameTest() {
+        val name = asyncPlatform.getName("hash").join()
+        assertEquals("hash", DomainDocument(name!!).label)
+    }
+}
@@ -0,0 +1,74 @@
+package org.dashj.platform.sdk.platform.coroutines
+
+import java.util.concurrent.Executors
+import kotlinx.coroutines.async
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.sdk.platform.DomainDocument
+import org.dashj.platform.sdk.platform.Names
+import org.dashj.platform.sdk.platform.PlatformNetwork
+import org.dashj.platform.sdk.platform.async.DapiFutureClient
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+
+class CoroutinePlatformTest : PlatformNetwork() {
+
+    private val coroutinePlatform = CoroutinePlatform(platform)
+
+    @Test
+    fun getNameTest() {
+        runBlocking {
+            val name = coroutinePlatform.getName("hash")
+            assertNotNull(name)
+            assertEquals("hash", DomainDocument(name!!).label)
+        }
+    }
+
+    @Test
+    fun searchNamesTest() {
+        val blocking = platform.names.search("x-hash", Names.DEFAULT_PARENT_DOMAIN, retrieveAll = true)
+        val flow = runBlocking {
+            coroutinePlatform.searchNames("x-hash").toList()
+        }
+        assertEquals(blocking.map { it.id }, flow.map { it.id })
+    }
+
+    @Test
+    fun getIdentitiesTest() {
+        val names = platform.names.search("x-hash", Names.DEFAULT_PARENT_DOMAIN, retrieveAll = false, limit = 10)
+        val ids = names.mapNotNull { DomainDocument(it).dashUniqueIdentityId } + Identifier.from(ByteArray(32))
+
+        val identities = runBlocking { coroutinePlatform.getIdentities(ids) }
+
+        assertEquals(ids.size - 1, identities.size)
+    }
+
+    @Test
+    fun futureClientTest() {
+        val names = platform.names.search("x-hash", Names.DEFAULT_PARENT_DOMAIN, retrieveAll = false, limit = 10)
+        val ids = names.mapNotNull { DomainDocument(it).dashUniqueIdentityId } + Identifier.from(ByteArray(32))
+
+        DapiFutureClient(platform).use { futureClient ->
+            // every request is in flight at the same time on a single thread
+            val singleThread = Executors.newSingleThreadExecutor().asCoroutineDispatcher()
+            val nonBlocking = CoroutinePlatform(platform, singleThread, futureClient)
+            val identities = runBlocking(singleThread) {
+                (0 until 10).flatMap { ids }.map { id -> async { nonBlocking.getIdentity(id) } }.awaitAll()
+            }
+
+            assertEquals(ids.size * 10, identities.size)
+            assertEquals(ids.dropLast(1), identities.take(ids.size).dropLast(1).map { it!!.id })
+            assertNull(identities[ids.size - 1])
+
+            val flow = runBlocking { nonBlocking.searchNames("x-hash").toList() }
+            val blocking = platform.names.search("x-hash", Names.DEFAULT_PARENT_DOMAIN, retrieveAll = true)
+            assertEquals(blocking.map { it.id }, flow.map { it.id })
+            singleThread.close()
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.dashj.platform.sdk.platform.trace
+
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.zip.GZIPOutputStream
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.util.Entropy
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class DapiTraceTest {
+
+    @Test
+    fun roundTripTest() {
+        val identityId = Identifier.from(Entropy.generate())
+        val missingId = Identifier.from(Entropy.generate())
+        val firstResponse = Entropy.generateRandomBytes(100)
+        val secondResponse = Entropy.generateRandomBytes(3000)
+
+        val stream = ByteArrayOutputStream()
+        DapiTraceRecorder(stream).use { recorder ->
+            val started = System.nanoTime()
+            recorder.record(DapiTrace.Kind.GET_IDENTITY, DapiTrace.identityRequest(identityId), started, listOf(firstResponse))
+            recorder.record(DapiTrace.Kind.GET_IDENTITY, DapiTrace.identityRequest(identityId), started, listOf(secondResponse))
+            recorder.recordNotFound(DapiTrace.Kind.GET_IDENTITY, DapiTrace.identityRequest(missingId), started)
+            recorder.recordError(DapiTrace.Kind.BROADCAST_STATE_TRANSITION, DapiTrace.broadcastRequest(), started, Exception("invalid"))
+            assertEquals(4, recorder.entryCount)
+        }
+
+        val replayer = DapiTraceReplayer(ByteArrayInputStream(stream.toByteArray()), 0.0)
+        assertEquals(4, replayer.entries.size)
+        assertTrue(replayer.hasResponse(DapiTrace.Kind.GET_IDENTITY, DapiTrace.identityRequest(identityId)))
+        assertFalse(replayer.hasResponse(DapiTrace.Kind.GET_DATA_CONTRACT, DapiTrace.identityRequest(identityId)))
+
+        // responses to the same request are returned in order and then repeat
+        val request = DapiTrace.identityRequest(identityId)
+        assertArrayEquals(firstResponse, replayer.replay(DapiTrace.Kind.GET_IDENTITY, request).payloads[0])
+        assertArrayEquals(secondResponse, replayer.replay(DapiTrace.Kind.GET_IDENTITY, request).payloads[0])
+        assertArrayEquals(firstResponse, replayer.replay(DapiTrace.Kind.GET_IDENTITY, request).payloads[0])
+
+        assertEquals(
+            DapiTrace.Status.NOT_FOUND,
+            replayer.replay(DapiTrace.Kind.GET_IDENTITY, DapiTrace.identityRequest(missingId)).status
+        )
+
+        assertThrows<DapiTraceException> {
+            replayer.replay(DapiTrace.Kind.BROADCAST_STATE_TRANSITION, DapiTrace.broadcastRequest())
+        }
+        assertThrows<DapiTraceException> {
+            replayer.replay(DapiTrace.Kind.GET_DATA_CONTRACT, DapiTrace.dataContractRequest(identityId))
+        }
+    }
+
+    @Test
+    fun invalidFileTest() {
+        val stream = ByteArrayOutputStream()
+        GZIPOutputStream(stream).use { it.write("not a trace".toByteArray()) }
+
+        assertThrows<DapiTraceException> {
+            DapiTraceReplayer(ByteArrayInputStream(stream.toByteArray()))
+        }
+    }
+}
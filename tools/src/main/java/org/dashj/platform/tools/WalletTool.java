@@ -1556,7 +1556,7 @@ public class WalletTool {
 
         if (blockchainIdentity != null && blockchainIdentity.getCurrentUsername() != null) {
             // synchronize the Platform data here
-            dashPayWallet = new DashPayWallet(blockchainIdentity, peerGroup, null);
+            dashPayWallet = new DashPayWallet(blockchainIdentity, peerGroup, null, new File(walletFile.getPath() + ".contacts"));
             dashPayWallet.updateContactRequests();
         } else {
             //throw new RuntimeException("blockchainIdentity is null");
@@ -8,28 +8,43 @@ package org.dashj.platform.tools
 
 import com.google.common.base.Stopwatch
 import io.grpc.StatusRuntimeException
+import java.io.File
+import java.io.IOException
 import java.lang.Long.max
 import java.util.concurrent.atomic.AtomicBoolean
 import org.bitcoinj.core.Context
 import org.bitcoinj.core.PeerGroup
-import org.bitcoinj.crypto.KeyCrypterException
-import org.bitcoinj.evolution.EvolutionContact
 import org.bouncycastle.crypto.params.KeyParameter
 import org.dashj.platform.dashpay.BlockchainIdentity
 import org.dashj.platform.dashpay.Contact
+import org.dashj.platform.dashpay.ContactGraph
+import org.dashj.platform.dashpay.ContactImport
 import org.dashj.platform.dashpay.ContactRequest
-import org.dashj.platform.dashpay.ContactRequests
+import org.dashj.platform.dashpay.ContactSyncEngine
+import org.dashj.platform.dashpay.FilterUpdateCoordinator
 import org.dashj.platform.dashpay.Profile
-import org.dashj.platform.dashpay.Profiles
+import org.dashj.platform.dashpay.ProfileStore
 import org.dashj.platform.dpp.document.Document
 import org.dashj.platform.dpp.identifier.Identifier
 import org.dashj.platform.sdk.platform.DomainDocument
 import org.slf4j.LoggerFactory
 
-class DashPayWallet(val blockchainIdentity: BlockchainIdentity, val peerGroup: PeerGroup?, val password: String? = null) {
+/**
+ * @param syncFile where the contact requests are saved between runs, see [ContactSyncEngine]
+ */
+class DashPayWallet @JvmOverloads constructor(
+    val blockchainIdentity: BlockchainIdentity,
+    val peerGroup: PeerGroup?,
+    val password: String? = null,
+    val syncFile: File? = null
+) {
     val wallet = blockchainIdentity.wallet!!
     val platform = blockchainIdentity.platform
-    val contactRequests = arrayListOf<ContactRequest>()
+    val contactSyncEngine = ContactSyncEngine(platform, blockchainIdentity.uniqueIdentifier)
+    val contactRequests: List<ContactRequest>
+        get() = contactSyncEngine.allContactRequests
+    val contactGraph = ContactGraph()
+    val profileStore = ProfileStore(blockchainIdentity.profiles)
     val profiles = hashMapOf<Identifier, Profile>()
     val names = hashMapOf<Identifier, DomainDocument>()
 
@@ -38,6 +53,21 @@ class DashPayWallet(val blockchainIdentity: BlockchainIdentity, val peerGroup: P
 
     val updatingContacts = AtomicBoolean(false)
 
+    val filterUpdateCoordinator = peerGroup?.let { FilterUpdateCoordinator(it, platform) }
+
+    init {
+        blockchainIdentity.filterUpdateCoordinator = filterUpdateCoordinator
+        blockchainIdentity.profiles.store = profileStore
+        if (syncFile != null && syncFile.exists()) {
+            try {
+                contactSyncEngine.load(syncFile)
+                contactGraph.addAll(contactRequests)
+            } catch (e: IOException) {
+                log.warn("unable to load contact requests from $syncFile, they will be synced again: ${e.message}")
+            }
+        }
+    }
+
     fun getContactRequestLastTimestamp(): Long {
         var lastTimestamp = 0L
         contactRequests.forEach {
@@ -47,15 +77,11 @@ class DashPayWallet(val blockchainIdentity: BlockchainIdentity, val peerGroup: P
     }
 
     fun getSentContactRequests(): List<ContactRequest> {
-        return contactRequests.filter {
-            it.ownerId == blockchainIdentity.uniqueIdentifier
-        }
+        return contactSyncEngine.getContactRequests(ContactSyncEngine.Direction.SENT)
     }
 
     fun getRecievedContactRequests(): List<ContactRequest> {
-        return contactRequests.filter {
-            it.toUserId == blockchainIdentity.uniqueIdentifier
-        }
+        return contactSyncEngine.getContactRequests(ContactSyncEngine.Direction.RECEIVED)
     }
 
     fun getSentContactRequestsMap(): Map<Identifier, ContactRequest> {
@@ -96,92 +122,35 @@ class DashPayWallet(val blockchainIdentity: BlockchainIdentity, val peerGroup: P
                 return
             }
 
-            val userId = blockchainIdentity.uniqueIdentifier
-            val userIdString = blockchainIdentity.uniqueIdString
-
             if (blockchainIdentity.currentUsername == null) {
                 return // this is here because the wallet is being reset without removing blockchainIdentityData
             }
 
-            val userIdList = HashSet<Identifier>()
             val watch = Stopwatch.createStarted()
-            var addedContact = false
             Context.propagate(wallet.context)
-            var encryptionKey: KeyParameter? = null
-
-            var lastContactRequestTime = if (contactRequests.size > 0) {
-                getContactRequestLastTimestamp() - (60 * 1000) * 12
-            } else {
-                0L
-            }
 
             updatingContacts.set(true)
             // checkDatabaseIntegrity()
 
-            // Get all out our contact requests
-            val toContactDocuments = ContactRequests(platform).get(userId, toUserId = false, afterTime = lastContactRequestTime, retrieveAll = true)
-            toContactDocuments.forEach {
-                val contactRequest = ContactRequest(it)
-                userIdList.add(contactRequest.toUserId)
-                contactRequests.add(contactRequest)
-
-                // add our receiving from this contact keychain if it doesn't exist
-                val contact = EvolutionContact(userIdString, contactRequest.toUserId.toString())
-                try {
-                    if (!wallet.hasReceivingKeyChain(contact)) {
-                        val contactIdentity = platform.identities.get(contactRequest.toUserId)
-                        if (encryptionKey == null && wallet.isEncrypted) {
-                            // Don't bother with DeriveKeyTask here, just call deriveKey
-                            encryptionKey = wallet.keyCrypter!!.deriveKey(password)
-                        }
-                        blockchainIdentity.addPaymentKeyChainFromContact(contactIdentity!!, contactRequest, encryptionKey)
-                        addedContact = true
-                    }
-                } catch (e: KeyCrypterException) {
-                    // we can't send payments to this contact due to an invalid encryptedPublicKey
-                    log.info("ContactRequest: error ${e.message}")
-                }
-            }
-            // Get all contact requests where toUserId == userId, the users who have added me
-            val fromContactDocuments = ContactRequests(platform).get(userId, toUserId = true, afterTime = lastContactRequestTime, retrieveAll = true)
-            fromContactDocuments.forEach {
-                val contactRequest = ContactRequest(it)
-                userIdList.add(contactRequest.ownerId)
-                contactRequests.add(contactRequest)
-
-                // add the sending to contact keychain if it doesn't exist
-                val contact = EvolutionContact(userIdString, contactRequest.ownerId.toString())
-                try {
-                    if (!wallet.hasSendingKeyChain(contact)) {
-                        val contactIdentity = platform.identities.get(contactRequest.ownerId)
-                        if (encryptionKey == null && wallet.isEncrypted) {
-                            encryptionKey = wallet.keyCrypter!!.deriveKey(password)
-                        }
-                        blockchainIdentity.addContactPaymentKeyChain(contactIdentity!!, it, encryptionKey)
-                        addedContact = true
-                    }
-                } catch (e: KeyCrypterException) {
-                    // we can't send payments to this contact due to an invalid encryptedPublicKey
-                    log.info("ContactRequest: error ${e.message}")
-                }
-            }
+            // Get the contact requests that are new since the last update, in both directions
+            val syncResult = contactSyncEngine.sync()
+            val toContactDocuments = syncResult.sent
+            // contact requests where toUserId == userId, the users who have added me
+            val fromContactDocuments = syncResult.received
+            contactGraph.addAll(toContactDocuments + fromContactDocuments)
 
-            // If new keychains were added to the wallet, then update the bloom filters
-            if (addedContact) {
-                peerGroup?.recalculateFastCatchupAndFilter(PeerGroup.FilterRecalculateMode.SEND_IF_CHANGED)
-            }
+            // add our receiving from and sending to keychains for each contact if they don't exist,
+            // which also retries requests from earlier syncs whose keychains were not added
+            // the bloom filters are then updated once by the filterUpdateCoordinator
+            filterUpdateCoordinator?.batch { addContactKeyChains(contactRequests) } ?: addContactKeyChains(contactRequests)
 
-            // obtain profiles from new contacts
-            if (userIdList.isNotEmpty()) {
-                updateContactProfiles(userIdList.toList(), 0L)
-            }
-
-            // fetch updated profiles from the network
-            updateContactProfiles(lastContactRequestTime)
+            // fetch the profiles of new contacts and the profiles that have changed
+            updateContactProfiles()
 
             // fire listeners if there were new contacts
-            if (fromContactDocuments.isNotEmpty() || toContactDocuments.isNotEmpty()) {
+            if (!syncResult.isEmpty) {
                 //    fireContactsUpdatedListeners()
+                syncFile?.let { contactSyncEngine.save(it) }
             }
 
             log.info("updating contacts and profiles took $watch")
@@ -191,47 +160,75 @@ class DashPayWallet(val blockchainIdentity: BlockchainIdentity, val peerGroup: P
             updatingContacts.set(false)
             if (preDownloadBlocks.get()) {
                 log.info("PreDownloadBlocks: complete")
+                // the keychains of new contacts must be in the bloom filter before blocks are downloaded
+                filterUpdateCoordinator?.flush()
                 peerGroup?.triggerPreBlockDownloadComplete()
                 preDownloadBlocks.set(false)
             }
         }
     }
 
+    /**
+     * Adds the keychains of contact requests in stages, so that network requests and decryption
+     * are not interleaved for each contact:
+     *
+     * 1. collect the requests that don't have a keychain and the ids of their contacts, which is
+     *    only a lookup in the wallet for requests that already have one
+     * 2. fetch the identities of those contacts concurrently
+     * 3. decrypt the requests and add the keychains in parallel
+     *
+     * @return true if a keychain was added
+     */
+    private fun addContactKeyChains(contactRequests: List<ContactRequest>): Boolean {
+        val pending = contactRequests.filter { !blockchainIdentity.hasContactKeyChain(it) }
+        if (pending.isEmpty()) {
+            return false
+        }
+        val contactIds = pending.map { contactIdOf(it) }.distinct()
+
+        val contactIdentities = platform.identities.getList(contactIds)
+        log.info("fetched ${contactIdentities.size} of ${contactIds.size} contact identities")
+
+        val imports = pending.mapNotNull { request ->
+            contactIdentities[contactIdOf(request)]?.let { ContactImport(it, request) }
+        }
+        // Don't bother with DeriveKeyTask here, just call deriveKey
+        val encryptionKey: KeyParameter? = if (wallet.isEncrypted) wallet.keyCrypter!!.deriveKey(password) else null
+        val importResult = blockchainIdentity.importContactRequests(imports, encryptionKey)
+        importResult.failed.forEach { (_, e) ->
+            // we can't send payments to this contact due to an invalid encryptedPublicKey
+            log.info("ContactRequest: error ${e.message}")
+        }
+        return importResult.addedKeyChains
+    }
+
+    private fun contactIdOf(contactRequest: ContactRequest): Identifier {
+        return if (contactRequest.ownerId == blockchainIdentity.uniqueIdentifier) {
+            contactRequest.toUserId
+        } else {
+            contactRequest.ownerId
+        }
+    }
+
     fun getEstablishedContacts(): List<Contact> {
-        val establishedContacts = arrayListOf<Contact>()
-        val sentRequests = getSentContactRequestsMap()
-        val receivedRequests = getRecievedContactRequestsMap()
-        val sentToIds = sentRequests.keys
-
-        for (id in sentToIds) {
-            val receivedRequest = receivedRequests[id]
-            if (receivedRequest != null) {
-                establishedContacts.add(Contact(names[id]!!.label, sentRequests[id], receivedRequests[id]))
-            }
+        val userId = blockchainIdentity.uniqueIdentifier
+        return contactGraph.getEstablishedContacts(userId).map { id ->
+            Contact(names[id]!!.label, contactGraph.get(userId, id), contactGraph.get(id, userId))
         }
-        return establishedContacts
     }
 
     /**
-     * Fetches updated profiles associated with contacts of userId after lastContactRequestTime
+     * Fetches the profiles of all contacts and our own that are new or have changed since the
+     * last update, see [ProfileStore]
      */
-    private fun updateContactProfiles(lastContactRequestTime: Long) {
+    private fun updateContactProfiles() {
         val watch = Stopwatch.createStarted()
-        val userIdSet = hashSetOf<Identifier>()
-
-        val toContactDocuments = getSentContactRequests()
-        toContactDocuments!!.forEach {
-            userIdSet.add(it.toUserId)
-        }
-        val fromContactDocuments = getRecievedContactRequests()
-        fromContactDocuments!!.forEach {
-            userIdSet.add(it.ownerId)
-        }
+        val userIdSet = getContactIdentities().toHashSet()
 
         // Also add our ownerId to get our profile, in case it was updated on a different device
         userIdSet.add(blockchainIdentity.uniqueIdentifier)
 
-        updateContactProfiles(userIdSet.toList(), lastContactRequestTime)
+        updateContactProfiles(userIdSet.toList())
         log.info("updating contacts and profiles took $watch")
     }
 
@@ -241,35 +238,26 @@ class DashPayWallet(val blockchainIdentity: BlockchainIdentity, val peerGroup: P
     }
 
     /**
-     * Fetches updated profiles of users in userIdList after lastContactRequestTime
-     *
-     * if lastContactRequestTime is 0, then all profiles are retrieved
+     * Fetches the profiles of users in userIdList that are new or have changed and the names
+     * of users that are not already known
      */
-    private fun updateContactProfiles(userIdList: List<Identifier>, lastContactRequestTime: Long, checkingIntegrity: Boolean = false) {
+    private fun updateContactProfiles(userIdList: List<Identifier>, checkingIntegrity: Boolean = false) {
         if (userIdList.isNotEmpty()) {
-            val identifierList = userIdList.map { Identifier.from(it) }
-            val profileDocuments =
-                Profiles(platform).getList(identifierList, lastContactRequestTime) // only handles 100 userIds
-            val profileById = profileDocuments.associateBy({ it.ownerId }, { it })
+            profileStore.refresh(userIdList)
 
-            val nameDocuments = platform.names.getList(identifierList)
-            val nameById = nameDocuments.associateBy({ getIdentityForName(it) }, { it })
-
-            for (id in nameById.keys) {
-                val nameDocument = nameById[id] // what happens if there is no username for the identity? crash
-                val username = nameDocument!!.data["normalizedLabel"] as String
-                val identityId = getIdentityForName(nameDocument)
-                val name = DomainDocument(nameDocument)
-                names[identityId] = name
-
-                val profileDocument = profileById[id]
-
-                if (profileDocument != null) {
-                    profiles[id] = Profile(profileDocument)
+            val missingNames = userIdList.filter { !names.containsKey(it) }
+            if (missingNames.isNotEmpty()) {
+                platform.names.getList(missingNames).forEach {
+                    names[getIdentityForName(it)] = DomainDocument(it)
                 }
+            }
+
+            for (id in userIdList) {
+                val name = names[id] ?: continue
+                profileStore.getCached(id)?.let { profiles[id] = Profile(it) }
 
                 if (checkingIntegrity) {
-                    log.info("check database integrity: adding missing profile $username:$id")
+                    log.info("check database integrity: adding missing profile ${name.normalizedLabel}:$id")
                 }
             }
         }
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.tools
+
+import java.io.File
+import joptsimple.OptionParser
+import joptsimple.OptionSpec
+import org.dashj.platform.sdk.Client
+import org.dashj.platform.sdk.client.ClientOptions
+import org.dashj.platform.sdk.client.ExecutionMode
+import org.dashj.platform.sdk.platform.PlatformExecutor
+
+/**
+ * Compares the throughput of blocking Platform reads on a bounded pool of platform threads with
+ * the same reads on virtual threads, at increasing levels of concurrency
+ *
+ * Requests are served by replaying a trace recorded with `load-generator --record`, which preserves
+ * the recorded latency of each response (scaled by --speed) without depending on the network.
+ *
+ * Usage: execution-mode-benchmark --replay=trace [--speed=1.0] [--threads=16] [--concurrency=16,256,1024]
+ *                                 [--duration=20] [--mix=names:40,profiles:20,contacts:20,identities:20]
+ */
+object ExecutionModeBenchmark {
+    @JvmStatic
+    fun main(args: Array<String>) {
+        val parser = OptionParser()
+        parser.accepts("help")
+        val netFlag = parser.accepts("net").withRequiredArg().defaultsTo("testnet")
+        val replayFlag = parser.accepts("replay").withRequiredArg().required()
+        val speedFlag: OptionSpec<Double> = parser.accepts("speed").withRequiredArg().ofType(Double::class.java).defaultsTo(1.0)
+        val threadsFlag: OptionSpec<Int> = parser.accepts("threads").withRequiredArg().ofType(Int::class.java).defaultsTo(PlatformExecutor.DEFAULT_MAX_THREADS)
+        val concurrencyFlag = parser.accepts("concurrency").withRequiredArg().defaultsTo("16,256,1024")
+        val durationFlag: OptionSpec<Long> = parser.accepts("duration").withRequiredArg().ofType(Long::class.java).defaultsTo(20L)
+        val mixFlag = parser.accepts("mix").withRequiredArg().defaultsTo("names:40,profiles:20,contacts:20,identities:20")
+        val namesFlag = parser.accepts("names").withRequiredArg()
+        val identitiesFlag = parser.accepts("identities").withRequiredArg()
+
+        if (args.contains("--help")) {
+            parser.printHelpOn(System.out)
+            return
+        }
+        val options = parser.parse(*args)
+
+        val platform = Client(ClientOptions(network = options.valueOf(netFlag))).platform
+        platform.startReplay(File(options.valueOf(replayFlag)), options.valueOf(speedFlag))
+
+        val mix = LoadGenerator.parseMix(options.valueOf(mixFlag))
+        val (names, identities) = LoadGenerator.getInputs(platform, options.valueOf(namesFlag), options.valueOf(identitiesFlag))
+        val concurrencyLevels = options.valueOf(concurrencyFlag).split(',').map { it.trim().toInt() }
+        val duration = options.valueOf(durationFlag)
+        val threads = options.valueOf(threadsFlag)
+
+        println("Execution Mode Benchmark: replay of ${options.valueOf(replayFlag)} at ${options.valueOf(speedFlag)}x, ${duration}s per run, mix=$mix")
+        for (requestedMode in ExecutionMode.values()) {
+            for (concurrency in concurrencyLevels) {
+                val executor = PlatformExecutor(requestedMode, threads)
+                if (executor.mode != requestedMode) {
+                    println("$requestedMode is not supported by this JVM, skipping")
+                    executor.close()
+                    break
+                }
+                val generator = LoadGenerator(platform, mix, names, identities, 10, null, null)
+                val elapsed = generator.run(LoadGenerator.Mode.CLOSED, concurrency, duration, 0.0, executor.executorService)
+                val total = generator.stats.values.sumBy { it.count }
+                println("\n${executor.mode} (threads=${if (executor.mode == ExecutionMode.PLATFORM_THREADS) threads.toString() else "virtual"}) concurrency=$concurrency: %.1f ops/s".format(total / (elapsed / 1e9)))
+                print(generator.report(elapsed))
+            }
+        }
+        System.exit(0)
+    }
+}
@@ -0,0 +1,334 @@
+/**
+ * Copyright (c) 2023-present, Dash Core Group
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+package org.dashj.platform.tools
+
+import java.io.File
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.LockSupport
+import joptsimple.OptionParser
+import joptsimple.OptionSpec
+import org.bitcoinj.core.ECKey
+import org.bitcoinj.core.Sha256Hash
+import org.bitcoinj.core.Utils
+import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dashpay.ContactRequests
+import org.dashj.platform.dashpay.Profiles
+import org.dashj.platform.dpp.identifier.Identifier
+import org.dashj.platform.dpp.identity.Identity
+import org.dashj.platform.dpp.util.Entropy
+import org.dashj.platform.sdk.Client
+import org.dashj.platform.sdk.client.ClientOptions
+import org.dashj.platform.sdk.platform.DomainDocument
+import org.dashj.platform.sdk.platform.Names
+import org.dashj.platform.sdk.platform.Platform
+import org.dashj.platform.sdk.platform.trace.DapiTraceNotRecordedException
+
+/**
+ * Drives a configurable mix of Platform reads and writes with a number of workers and reports
+ * the throughput and latency percentiles of each operation.
+ *
+ * With --replay, requests are served from a trace recorded with --record (see [Platform.startRecording])
+ * instead of the network, so that the SDK can be load tested offline.  Each operation cycles through
+ * a fixed schedule of inputs, so that a replay makes the requests of the recorded run with the same
+ * inputs.  Requests that are not in the trace, such as when a replay runs past the inputs that were
+ * recorded, are reported as unrecorded rather than as errors.
+ *
+ * Usage: load-generator [--net=testnet] [--workers=8] [--duration=30] [--mode=closed|open --rate=100]
+ *                       [--mix=names:40,profiles:20,contacts:20,identities:20,broadcast:0]
+ *                       [--names=a,b] [--identities=id1,id2] [--batch=10]
+ *                       [--identity=id --identity-key=hex] [--record=file | --replay=file [--speed=1.0]]
+ */
+class LoadGenerator(
+    val platform: Platform,
+    val operations: Map<Operation, Int>,
+    val names: List<String>,
+    val identities: List<Identifier>,
+    val batchSize: Int,
+    private val broadcastIdentity: Identity?,
+    private val broadcastKey: ECKey?
+) {
+    enum class Operation {
+        NAMES, // Names.get
+        PROFILES, // Profiles.getList
+        CONTACTS, // ContactRequests.get
+        IDENTITIES, // Identities.get
+        BROADCAST // Documents.broadcast of a preorder document
+    }
+
+    enum class Mode {
+        CLOSED, // each worker issues the next request when the previous one completes
+        OPEN // requests are issued at a fixed rate regardless of how quickly they complete
+    }
+
+    class LatencyStats {
+        private var latencies = LongArray(1024)
+        var count = 0
+            private set
+        private val errors = AtomicLong()
+        private val unrecorded = AtomicLong()
+
+        @Synchronized
+        fun add(latencyNanos: Long) {
+            if (count == latencies.size) {
+                latencies = latencies.copyOf(count * 2)
+            }
+            latencies[count++] = latencyNanos
+        }
+
+        fun addError() {
+            errors.incrementAndGet()
+        }
+
+        val errorCount: Long
+            get() = errors.get()
+
+        fun addUnrecorded() {
+            unrecorded.incrementAndGet()
+        }
+
+        /** the number of requests that were not in the replayed trace */
+        val unrecordedCount: Long
+            get() = unrecorded.get()
+
+        @Synchronized
+        fun summary(elapsedNanos: Long): String {
+            val sorted = latencies.copyOf(count)
+            sorted.sort()
+            val throughput = count / (elapsedNanos / 1e9)
+            return "%8d ok %6d err %6d unrec %9.1f ops/s  p50=%7.1fms  p90=%7.1fms  p99=%7.1fms  p99.9=%7.1fms  max=%7.1fms".format(
+                count, errorCount, unrecordedCount, throughput,
+                percentile(sorted, 50.0), percentile(sorted, 90.0), percentile(sorted, 99.0),
+                percentile(sorted, 99.9), if (count > 0) sorted[count - 1] / 1e6 else 0.0
+            )
+        }
+
+        private fun percentile(sorted: LongArray, percentile: Double): Double {
+            if (sorted.isEmpty()) {
+                return 0.0
+            }
+            val index = Math.ceil(percentile / 100.0 * sorted.size).toInt() - 1
+            return sorted[index.coerceIn(0, sorted.size - 1)] / 1e6
+        }
+    }
+
+    val stats = Operation.values().associate { it to LatencyStats() }
+    private val totalWeight = operations.values.sum()
+    private val profiles = Profiles(platform)
+    private val contactRequests = ContactRequests(platform)
+
+    init {
+        require(totalWeight > 0) { "the operation mix must have at least one positive weight" }
+        require(operations[Operation.BROADCAST] ?: 0 == 0 || (broadcastIdentity != null && broadcastKey != null)) {
+            "broadcast operations require --identity and --identity-key"
+        }
+        require(names.isNotEmpty() && identities.isNotEmpty()) { "names and identities are required" }
+        require(batchSize > 0) { "--batch must be positive" }
+    }
+
+    // the inputs of each operation are taken in order from a fixed schedule rather than at random,
+    // so that a run with --replay issues the same requests as the run that was recorded
+    private val profileBatches = identities.distinct().chunked(batchSize)
+    private val contactQueries = identities.flatMap { listOf(Pair(it, true), Pair(it, false)) }
+    private val sequences = Operation.values().associate { it to AtomicLong() }
+
+    private fun <T> nextItem(operation: Operation, schedule: List<T>): T {
+        return schedule[Math.floorMod(sequences.getValue(operation).getAndIncrement(), schedule.size.toLong()).toInt()]
+    }
+
+    private fun nextOperation(): Operation {
+        var choice = ThreadLocalRandom.current().nextInt(totalWeight)
+        for ((operation, weight) in operations) {
+            if (choice < weight) {
+                return operation
+            }
+            choice -= weight
+        }
+        throw IllegalStateException("invalid operation mix")
+    }
+
+    private fun execute(operation: Operation) {
+        when (operation) {
+            Operation.NAMES -> platform.names.get(nextItem(operation, names))
+            Operation.PROFILES -> profiles.getList(nextItem(operation, profileBatches))
+            Operation.CONTACTS -> {
+                val (identity, toUserId) = nextItem(operation, contactQueries)
+                contactRequests.get(identity, toUserId, retrieveAll = false)
+            }
+            Operation.IDENTITIES -> platform.identities.get(nextItem(operation, identities))
+            Operation.BROADCAST -> {
+                val preorder = platform.names.createPreorderDocument(Sha256Hash.wrap(Entropy.generate()), broadcastIdentity!!)
+                platform.documents.broadcast(broadcastIdentity, broadcastKey!!, listOf(preorder))
+            }
+        }
+    }
+
+    /**
+     * Executes one operation and records its latency
+     *
+     * @param intendedStart the time that the operation should have started. In open loop mode this may
+     * be before the actual start if the workers cannot keep up, which is included in the latency.
+     */
+    private fun measure(operation: Operation, intendedStart: Long) {
+        try {
+            execute(operation)
+            stats.getValue(operation).add(System.nanoTime() - intendedStart)
+        } catch (e: Exception) {
+            if (isNotRecorded(e)) {
+                stats.getValue(operation).addUnrecorded()
+            } else {
+                stats.getValue(operation).addError()
+            }
+        }
+    }
+
+    // the replayer's exception may be wrapped by the SDK
+    private fun isNotRecorded(e: Throwable): Boolean {
+        return generateSequence(e) { it.cause }.take(10).any { it is DapiTraceNotRecordedException }
+    }
+
+    /**
+     * @param executor runs the operations and is shut down when complete
+     * @return the elapsed time in nanoseconds
+     */
+    fun run(
+        mode: Mode,
+        workers: Int,
+        durationSeconds: Long,
+        rate: Double,
+        executor: ExecutorService = Executors.newFixedThreadPool(workers)
+    ): Long {
+        val start = System.nanoTime()
+        val end = start + TimeUnit.SECONDS.toNanos(durationSeconds)
+
+        when (mode) {
+            Mode.CLOSED -> {
+                for (i in 0 until workers) {
+                    executor.execute {
+                        while (System.nanoTime() < end) {
+                            measure(nextOperation(), System.nanoTime())
+                        }
+                    }
+                }
+            }
+            Mode.OPEN -> {
+                require(rate > 0.0) { "open loop mode requires --rate" }
+                val interval = (1e9 / rate).toLong()
+                var next = start
+                while (next < end) {
+                    val wait = next - System.nanoTime()
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait)
+                    }
+                    val intendedStart = next
+                    executor.execute { measure(nextOperation(), intendedStart) }
+                    next += interval
+                }
+            }
+        }
+
+        executor.shutdown()
+        executor.awaitTermination(durationSeconds + 60, TimeUnit.SECONDS)
+        return System.nanoTime() - start
+    }
+
+    fun report(elapsedNanos: Long): String {
+        val builder = StringBuilder()
+        operations.keys.forEach {
+            builder.append("%-11s".format(it.name.toLowerCase())).append(stats.getValue(it).summary(elapsedNanos)).append('\n')
+        }
+        return builder.toString()
+    }
+
+    companion object {
+        @JvmStatic
+        fun main(args: Array<String>) {
+            val parser = OptionParser()
+            parser.accepts("help")
+            val netFlag = parser.accepts("net").withRequiredArg().defaultsTo("testnet")
+            val workersFlag: OptionSpec<Int> = parser.accepts("workers").withRequiredArg().ofType(Int::class.java).defaultsTo(8)
+            val durationFlag: OptionSpec<Long> = parser.accepts("duration").withRequiredArg().ofType(Long::class.java).defaultsTo(30L)
+            val modeFlag: OptionSpec<String> = parser.accepts("mode").withRequiredArg().defaultsTo("closed")
+            val rateFlag: OptionSpec<Double> = parser.accepts("rate").withRequiredArg().ofType(Double::class.java).defaultsTo(0.0)
+            val mixFlag = parser.accepts("mix").withRequiredArg().defaultsTo("names:40,profiles:20,contacts:20,identities:20")
+            val namesFlag = parser.accepts("names").withRequiredArg()
+            val identitiesFlag = parser.accepts("identities").withRequiredArg()
+            val batchFlag: OptionSpec<Int> = parser.accepts("batch").withRequiredArg().ofType(Int::class.java).defaultsTo(10)
+            val identityFlag = parser.accepts("identity").withRequiredArg()
+            val identityKeyFlag = parser.accepts("identity-key").withRequiredArg()
+            val recordFlag = parser.accepts("record").withRequiredArg()
+            val replayFlag = parser.accepts("replay").withRequiredArg()
+            val speedFlag: OptionSpec<Double> = parser.accepts("speed").withRequiredArg().ofType(Double::class.java).defaultsTo(1.0)
+
+            val options = parser.parse(*args)
+            if (options.has("help")) {
+                parser.printHelpOn(System.out)
+                return
+            }
+
+            val platform = Client(ClientOptions(network = options.valueOf(netFlag))).platform
+            if (options.has(replayFlag)) {
+                platform.startReplay(File(options.valueOf(replayFlag)), options.valueOf(speedFlag))
+            } else if (options.has(recordFlag)) {
+                platform.startRecording(File(options.valueOf(recordFlag)))
+            }
+
+            val mix = parseMix(options.valueOf(mixFlag))
+            val (names, identities) = getInputs(platform, options.valueOf(namesFlag), options.valueOf(identitiesFlag))
+
+            val broadcastIdentity = options.valueOf(identityFlag)?.let { platform.identities.get(it) }
+            val broadcastKey = options.valueOf(identityKeyFlag)?.let { ECKey.fromPrivate(Utils.HEX.decode(it)) }
+
+            val generator = LoadGenerator(platform, mix, names, identities, options.valueOf(batchFlag), broadcastIdentity, broadcastKey)
+            val mode = Mode.valueOf(options.valueOf(modeFlag).toUpperCase())
+
+            println("Load Generator: $mode loop, ${options.valueOf(workersFlag)} workers, ${options.valueOf(durationFlag)}s, mix=$mix")
+            println("Target: ${if (options.has(replayFlag)) "replay of ${options.valueOf(replayFlag)}" else options.valueOf(netFlag)}")
+            val elapsed = generator.run(mode, options.valueOf(workersFlag), options.valueOf(durationFlag), options.valueOf(rateFlag))
+            println(generator.report(elapsed))
+
+            platform.stopRecording()
+            System.exit(0)
+        }
+
+        /**
+         * Parses the comma separated names and identities.  If either is missing, then the
+         * first page of DPNS names is used.
+         */
+        fun getInputs(platform: Platform, namesArg: String?, identitiesArg: String?): Pair<List<String>, List<Identifier>> {
+            var names = namesArg?.split(',') ?: listOf()
+            var identities = identitiesArg?.split(',')?.map { Identifier.from(it) } ?: listOf()
+
+            if (names.isEmpty() || identities.isEmpty()) {
+                val domains = platform.documents.get(Names.DPNS_DOMAIN_DOCUMENT, DocumentQuery.builder().limit(100).build())
+                    .map { DomainDocument(it) }
+                if (names.isEmpty()) {
+                    names = domains.map { it.normalizedLabel }
+                }
+                if (identities.isEmpty()) {
+                    identities = domains.mapNotNull { it.dashUniqueIdentityId }
+                }
+            }
+            return Pair(names, identities)
+        }
+
+        /**
+         * Parses an operation mix in the form of "names:40,profiles:20"
+         */
+        fun parseMix(mix: String): Map<Operation, Int> {
+            val result = linkedMapOf<Operation, Int>()
+            mix.split(',').filter { it.isNotBlank() }.forEach {
+                val (name, weight) = it.split(':')
+                result[Operation.valueOf(name.trim().toUpperCase())] = weight.trim().toInt()
+            }
+            return result.filter { it.value > 0 }
+        }
+    }
+}
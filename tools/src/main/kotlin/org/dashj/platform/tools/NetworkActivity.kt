@@ -7,6 +7,7 @@
 package org.dashj.platform.tools
 
 import org.dashj.platform.dapiclient.model.DocumentQuery
+import org.dashj.platform.dashpay.ContactGraph
 import org.dashj.platform.dashpay.ContactRequest
 import org.dashj.platform.dashpay.ContactRequests
 import org.dashj.platform.dashpay.Profile
@@ -128,21 +129,9 @@ class NetworkActivity {
         }
 
         private fun getEstablishedContacts(contactRequests: List<ContactRequest>): List<Pair<ContactRequest, ContactRequest>> {
-            val establishedContacts = arrayListOf<Pair<ContactRequest, ContactRequest>>()
-            val contactsRequestByOwnerId = contactRequests.associateBy({ it.ownerId }, { it })
-            val ownerIds = contactsRequestByOwnerId.keys
-            val contactRequestsByToUserId = contactRequests.associateBy({ it.toUserId }, { it })
-
-            for (sentContactRequest in contactRequests) {
-                val sender = sentContactRequest.ownerId
-                val recipient = sentContactRequest.toUserId
-                val receivedContactRequest = contactRequests.find { it.toUserId == sender && it.ownerId == recipient }
-                if (receivedContactRequest != null) {
-                    val contact = Pair(sentContactRequest, receivedContactRequest)
-                    establishedContacts.add(contact)
-                }
-            }
-            return establishedContacts
+            val contactGraph = ContactGraph()
+            contactGraph.addAll(contactRequests)
+            return contactGraph.getEstablishedPairs()
         }
 
         fun getProfileDocuments(): List<Profile> {